@@ -0,0 +1,35 @@
+package eu.qedv.tools.ootl.benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so allocation rates are reported
+ * next to throughput. Accepts the usual JMH command line options, like a
+ * benchmark name pattern or {@code -rf json -rff results.json} to keep results
+ * for comparison between releases.
+ *
+ * @author dimasinger
+ *
+ */
+public final class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException,
+			IOException {
+		CommandLineOptions options = new CommandLineOptions(args);
+		if(options.shouldHelp()) {
+			options.showHelp();
+			return;
+		}
+		new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+	}
+}
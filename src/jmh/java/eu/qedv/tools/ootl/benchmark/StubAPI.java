@@ -0,0 +1,113 @@
+package eu.qedv.tools.ootl.benchmark;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import br.eti.kinoshita.testlinkjavaapi.TestLinkAPI;
+import br.eti.kinoshita.testlinkjavaapi.constants.ActionOnDuplicate;
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionType;
+import br.eti.kinoshita.testlinkjavaapi.constants.TestCaseStatus;
+import br.eti.kinoshita.testlinkjavaapi.constants.TestImportance;
+import br.eti.kinoshita.testlinkjavaapi.model.Build;
+import br.eti.kinoshita.testlinkjavaapi.model.TestCase;
+import br.eti.kinoshita.testlinkjavaapi.model.TestCaseStep;
+import br.eti.kinoshita.testlinkjavaapi.model.TestPlan;
+import br.eti.kinoshita.testlinkjavaapi.model.TestProject;
+import br.eti.kinoshita.testlinkjavaapi.model.TestSuite;
+
+/**
+ * Stubbed {@link TestLinkAPI} answering instantly, so benchmarks measure the
+ * client only, like the Mockito setup of the unit tests.
+ * <p>
+ * The project has a complete tree of test suites named {@code suite0} to
+ * {@code suite7} on every level, {@link #DEPTH} levels deep. Every suite holds
+ * the given number of test cases named {@code testcase0} and up, each with
+ * {@link #STEPS} steps named {@code step0} and up. The project has the test
+ * plan {@code plan} with the build {@code build}.
+ *
+ * @author dimasinger
+ *
+ */
+final class StubAPI {
+
+	static final int FANOUT = 8;
+	static final int DEPTH = 4;
+	static final int STEPS = 20;
+
+	// suite IDs of the last level, which has no children
+	private static final int FIRST_LEAF_ID = leafID();
+
+	private StubAPI() {
+	}
+
+	private static int leafID() {
+		int id = 0;
+		for(int level = 1; level < DEPTH; ++level) {
+			id = id * FANOUT + FANOUT;
+		}
+		return id + 1;
+	}
+
+	/**
+	 * Creates a stub, without recording invocations so it can be called
+	 * millions of times
+	 */
+	static TestLinkAPI create(int testcasesPerSuite) {
+		TestLinkAPI api = mock(TestLinkAPI.class, withSettings().stubOnly());
+		when(api.getTestProjectByName(anyString())).then(i -> new TestProject(1, i.getArgument(0), "PROJ", "", true,
+				true, true, true, true, true));
+		when(api.getFirstLevelTestSuitesForTestProject(anyInt())).then(i -> suites(0));
+		when(api.getTestSuitesForTestSuite(anyInt())).then(i -> suites(i.getArgument(0)));
+		when(api.getTestCasesForTestSuite(anyInt(), anyBoolean(), any())).then(i -> testcases(i.getArgument(0),
+				testcasesPerSuite));
+		when(api.getTestPlanByName(anyString(), anyString())).then(i -> new TestPlan(10, i.getArgument(0), i
+				.getArgument(1), "", true, true));
+		when(api.getBuildsForTestPlan(anyInt())).then(i -> new Build[] { new Build(100, 10, "build", "") });
+		when(api.createTestCase(anyString(), anyInt(), anyInt(), anyString(), anyString(), any(), anyString(), any(),
+				any(), any(), anyInt(), anyInt(), anyBoolean(), any())).then(i -> testcase(1_000_000, i.getArgument(1),
+						i.getArgument(0), i.getArgument(5)));
+		return api;
+	}
+
+	private static TestSuite[] suites(int parentID) {
+		if(parentID >= FIRST_LEAF_ID) return new TestSuite[0];
+		TestSuite[] suites = new TestSuite[FANOUT];
+		for(int c = 0; c < FANOUT; ++c) {
+			suites[c] = new TestSuite(parentID * FANOUT + c + 1, 1, "suite" + c, "", parentID, -1, false,
+					ActionOnDuplicate.BLOCK);
+		}
+		return suites;
+	}
+
+	private static TestCase[] testcases(int suiteID, int count) {
+		TestCase[] testcases = new TestCase[count];
+		for(int i = 0; i < count; ++i) {
+			testcases[i] = testcase(suiteID * count + i + 1, suiteID, "testcase" + i, steps(STEPS));
+		}
+		return testcases;
+	}
+
+	static List<TestCaseStep> steps(int count) {
+		List<TestCaseStep> steps = new ArrayList<>(count);
+		for(int i = 0; i < count; ++i) {
+			steps.add(new TestCaseStep(i, 1, i + 1, "step" + i, "", true, ExecutionType.AUTOMATED));
+		}
+		return steps;
+	}
+
+	private static TestCase testcase(int id, int suiteID, String name, List<TestCaseStep> steps) {
+		return new TestCase(id, name, suiteID, 1, "author", "", steps, "", TestCaseStatus.FINAL,
+				TestImportance.MEDIUM, ExecutionType.AUTOMATED, 0, 0, id, "PROJ-" + id, false,
+				ActionOnDuplicate.BLOCK, 1, 1, suiteID, Collections.emptyList(), ExecutionStatus.NOT_RUN, null, 0);
+	}
+}
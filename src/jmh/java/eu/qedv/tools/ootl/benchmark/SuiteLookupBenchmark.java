@@ -0,0 +1,83 @@
+package eu.qedv.tools.ootl.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.eti.kinoshita.testlinkjavaapi.TestLinkAPI;
+import eu.qedv.tools.ootl.TLTestCase;
+import eu.qedv.tools.ootl.TLTestProject;
+import eu.qedv.tools.ootl.TLTestSuite;
+import eu.qedv.tools.ootl.TestLink;
+import eu.qedv.tools.ootl.TestLinkConfig;
+
+/**
+ * Lookups through the handle graph: test suites by path with empty (cold) and
+ * filled (warm) caches, and test cases by name in large suites
+ *
+ * @author dimasinger
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SuiteLookupBenchmark {
+
+	@Param({ "100", "10000" })
+	int testcasesPerSuite;
+
+	private TestLinkAPI api;
+	private TLTestProject warmProject;
+	private TLTestSuite largeSuite;
+	private List<List<String>> paths;
+
+	@Setup
+	public void setUp() {
+		api = StubAPI.create(testcasesPerSuite);
+		paths = Arrays.asList(Arrays.asList("suite0"), Arrays.asList("suite1", "suite2"), Arrays.asList("suite3",
+				"suite4", "suite5"), Arrays.asList("suite7", "suite6", "suite5", "suite4"));
+		warmProject = newProject();
+		paths.forEach(warmProject::getTestSuiteByPath);
+		largeSuite = warmProject.getTestSuiteByPath(paths.get(3)).get();
+		largeSuite.getTestCases();
+	}
+
+	private TLTestProject newProject() {
+		return new TestLink(TestLinkConfig.ALL_PERMISSIONS, api, "benchmark").getTestProject("project").get();
+	}
+
+	/**
+	 * Resolves a path of four levels with empty caches, as on the first report of
+	 * a process
+	 */
+	@Benchmark
+	public TLTestSuite getTestSuiteByPathCold() {
+		return newProject().getTestSuiteByPath(paths.get(3)).get();
+	}
+
+	@Benchmark
+	public TLTestSuite getTestSuiteByPathWarm() {
+		return warmProject.getTestSuiteByPath(paths.get(ThreadLocalRandom.current().nextInt(paths.size()))).get();
+	}
+
+	@Benchmark
+	public TLTestCase getTestCase() {
+		return largeSuite.getTestCase("testcase" + ThreadLocalRandom.current().nextInt(testcasesPerSuite)).get();
+	}
+}
@@ -0,0 +1,85 @@
+package eu.qedv.tools.ootl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.qedv.tools.ootl.TLBuild;
+import eu.qedv.tools.ootl.TLTestCase;
+import eu.qedv.tools.ootl.TLTestProject;
+import eu.qedv.tools.ootl.TestLink;
+import eu.qedv.tools.ootl.TestLinkConfig;
+import eu.qedv.tools.ootl.structure.ResultCode;
+import eu.qedv.tools.ootl.structure.TLTestResult;
+import eu.qedv.tools.ootl.structure.TLTestStep;
+
+/**
+ * Reporting a single test case: detecting whether it changed and executing it
+ * in a build
+ *
+ * @author dimasinger
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TestCaseBenchmark {
+
+	private TLTestCase testcase;
+	private TLBuild build;
+	private TLTestResult unchanged;
+	private TLTestResult changed;
+
+	@Setup
+	public void setUp() {
+		TestLink testlink = new TestLink(TestLinkConfig.ALL_PERMISSIONS, StubAPI.create(100), "benchmark");
+		TLTestProject project = testlink.getTestProject("project").get();
+		testcase = project.getTestSuiteByPath("suite0/suite0").get().getTestCase("testcase0").get();
+		build = project.getBuild("plan", "build").get();
+
+		unchanged = result(StubAPI.STEPS);
+		changed = result(StubAPI.STEPS + 1);
+	}
+
+	private static TLTestResult result(int steps) {
+		TLTestResult result = new TLTestResult();
+		result.setName("testcase0");
+		for(int i = 0; i < steps; ++i) {
+			new TLTestStep(result).setName("step" + i).setResult(ResultCode.SUCCESS);
+		}
+		return result;
+	}
+
+	/**
+	 * The common case of reporting: nothing changed, no API call
+	 */
+	@Benchmark
+	public TLTestCase updateUnchanged() {
+		return testcase.update("", unchanged);
+	}
+
+	/**
+	 * Detects the change and creates a new version through the stub
+	 */
+	@Benchmark
+	public TLTestCase updateChanged() {
+		return testcase.update("", changed);
+	}
+
+	@Benchmark
+	public boolean execute() {
+		return testcase.execute(build, ResultCode.SUCCESS, "benchmark");
+	}
+}
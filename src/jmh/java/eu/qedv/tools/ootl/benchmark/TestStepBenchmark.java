@@ -0,0 +1,98 @@
+package eu.qedv.tools.ootl.benchmark;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.eti.kinoshita.testlinkjavaapi.model.TestCaseStep;
+import eu.qedv.tools.ootl.structure.ResultCode;
+import eu.qedv.tools.ootl.structure.TLTestResult;
+import eu.qedv.tools.ootl.structure.TLTestStep;
+
+/**
+ * Operations on large step trees: a result with many repeated iterations of a
+ * few steps, like a long running test logging every iteration
+ *
+ * @author dimasinger
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TestStepBenchmark {
+
+	@Param({ "1000", "100000" })
+	int iterations;
+
+	private TLTestResult merged;
+	private TLTestStep leaf;
+
+	/**
+	 * Fresh tree for every merge, merging changes it
+	 */
+	@State(Scope.Thread)
+	public static class Unmerged {
+		TLTestResult tree;
+
+		@Setup(Level.Invocation)
+		public void setUp(TestStepBenchmark benchmark) {
+			tree = benchmark.newTree();
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		merged = newTree();
+		merged.mergeSteps();
+		leaf = merged.getStep(merged.steps() - 1);
+	}
+
+	TLTestResult newTree() {
+		TLTestResult result = new TLTestResult();
+		result.setName("result");
+		for(int i = 0; i < iterations; ++i) {
+			TLTestStep iteration = new TLTestStep(result).setName("iteration");
+			new TLTestStep(iteration).setName("prepare").setResult(ResultCode.SUCCESS).setDuration(Duration.ofMillis(1));
+			new TLTestStep(iteration).setName("act").setResult(ResultCode.SUCCESS).setDuration(Duration.ofMillis(2));
+			new TLTestStep(iteration).setName("check").setResult(ResultCode.SUCCESS).setDuration(Duration.ofMillis(1));
+		}
+		new TLTestStep(result).setName("teardown").setResult(ResultCode.SUCCESS);
+		return result;
+	}
+
+	@Benchmark
+	public TLTestResult mergeSteps(Unmerged unmerged) {
+		unmerged.tree.mergeSteps();
+		return unmerged.tree;
+	}
+
+	/**
+	 * Changes a step first, so the result is computed instead of memoized
+	 */
+	@Benchmark
+	public ResultCode getResult() {
+		leaf.setResult(leaf.getResult() == ResultCode.SUCCESS ? ResultCode.SKIPPED : ResultCode.SUCCESS);
+		return merged.getResult();
+	}
+
+	@Benchmark
+	public List<TestCaseStep> toSteps() {
+		return merged.toSteps(1);
+	}
+}
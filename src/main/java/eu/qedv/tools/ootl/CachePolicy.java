@@ -0,0 +1,95 @@
+package eu.qedv.tools.ootl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.time.Duration;
+
+/**
+ * Structure holding the eviction rules applied to every cache of a
+ * {@link TestLink} connection and its handles
+ * 
+ * @author dimasinger
+ *
+ */
+public class CachePolicy {
+
+	protected final long maximumSize;
+	protected final Duration timeToLive;
+	protected final Duration negativeTimeToLive;
+	protected final boolean softValues;
+
+	/**
+	 * Keeps all entries forever, the behaviour of earlier versions
+	 */
+	public static final CachePolicy UNBOUNDED = new CachePolicy(Long.MAX_VALUE, null, null, false);
+
+	/**
+	 * Creates a caching policy
+	 * 
+	 * @param maximumSize
+	 *            the maximum number of entries per keyed cache (like test
+	 *            projects or suite paths), least recently used entries are
+	 *            evicted beyond it
+	 * @param timeToLive
+	 *            how long an entry stays valid after it was loaded, null to keep
+	 *            entries forever
+	 * @param negativeTimeToLive
+	 *            how long the absence of an object (like a test suite path that
+	 *            does not exist) is remembered, null to use {@code timeToLive}
+	 * @param softValues
+	 *            whether cached content may be reclaimed by the garbage collector
+	 *            under memory pressure, it is reloaded on next access
+	 */
+	public CachePolicy(long maximumSize, Duration timeToLive, Duration negativeTimeToLive, boolean softValues) {
+		if(maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum cache size must be positive, was " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+		this.timeToLive = timeToLive;
+		this.negativeTimeToLive = negativeTimeToLive == null ? timeToLive : negativeTimeToLive;
+		this.softValues = softValues;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	public long getMaximumSize() {
+		return maximumSize;
+	}
+
+	public Duration getTimeToLive() {
+		return timeToLive;
+	}
+
+	public Duration getNegativeTimeToLive() {
+		return negativeTimeToLive;
+	}
+
+	public boolean isSoftValues() {
+		return softValues;
+	}
+
+	/**
+	 * Creates the reference holding a cached value if {@code softValues} is
+	 * set. The garbage collector clears it under memory pressure; subclasses
+	 * may track the references to clear them earlier.
+	 */
+	protected <V> Reference<V> softReference(V value) {
+		return new SoftReference<>(value);
+	}
+
+	long expiresAt(long now, boolean negative) {
+		Duration ttl = negative ? negativeTimeToLive : timeToLive;
+		if(ttl == null) return Long.MAX_VALUE;
+		long nanos;
+		try {
+			nanos = ttl.toNanos();
+		} catch(ArithmeticException e) {
+			return Long.MAX_VALUE;
+		}
+		long expires = now + nanos;
+		// on overflow the entry never expires
+		return expires < now ? Long.MAX_VALUE : expires;
+	}
+}
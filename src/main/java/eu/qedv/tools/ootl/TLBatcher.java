@@ -0,0 +1,195 @@
+package eu.qedv.tools.ootl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.xmlrpc.XmlRpcException;
+import org.apache.xmlrpc.XmlRpcRequest;
+import org.apache.xmlrpc.client.XmlRpcClientException;
+import org.apache.xmlrpc.client.XmlRpcClientRequestImpl;
+import org.apache.xmlrpc.client.XmlRpcHttpTransportException;
+
+/**
+ * Coalesces concurrent XML-RPC calls to one server into {@code system.multicall}
+ * requests.
+ * <p>
+ * The first call arriving waits up to the coalescing window for more calls,
+ * the call filling a batch to its maximum size sends it right away. Either
+ * way the batch is sent by one of the waiting callers, there is no thread of
+ * its own. Every caller gets its own result or fault back. If the server
+ * answers the multicall with a fault, it is assumed not to support multicalls
+ * and all calls are sent one by one from then on.
+ *
+ * @author dimasinger
+ *
+ */
+class TLBatcher {
+
+	private static final Log log = LogFactory.getLog(TLBatcher.class);
+
+	// result of calls the caller has to send itself
+	private static final Object FALLBACK = new Object();
+
+	/**
+	 * Sends a single request, bypassing the batcher
+	 */
+	interface Sender {
+		Object send(XmlRpcRequest request) throws XmlRpcException;
+	}
+
+	private static class Call {
+		final XmlRpcRequest request;
+		final CompletableFuture<Object> result = new CompletableFuture<>();
+
+		Call(XmlRpcRequest request) {
+			this.request = request;
+		}
+	}
+
+	private final long windowNanos;
+	private final int maxSize;
+
+	// guards pending, signalled when a batch was taken
+	private final Object lock = new Object();
+	private List<Call> pending = new ArrayList<>();
+	private volatile boolean supported = true;
+
+	final LongAdder multicalls = new LongAdder();
+	final LongAdder batchedCalls = new LongAdder();
+
+	TLBatcher(long windowNanos, int maxSize) {
+		this.windowNanos = windowNanos;
+		this.maxSize = maxSize;
+	}
+
+	Object execute(XmlRpcRequest request, Sender sender) throws XmlRpcException {
+		if(!supported) return sender.send(request);
+		Call call = new Call(request);
+		List<Call> batch = null;
+		synchronized(lock) {
+			List<Call> joined = pending;
+			joined.add(call);
+			if(joined.size() >= maxSize) {
+				batch = take();
+			} else if(joined.size() == 1) {
+				// the first call waits for others to join
+				long deadline = System.nanoTime() + windowNanos;
+				try {
+					for(long remaining = windowNanos; pending == joined && remaining > 0; remaining = deadline
+							- System.nanoTime()) {
+						TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+					}
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if(pending == joined) {
+					batch = take();
+				}
+			}
+		}
+		if(batch != null) {
+			try {
+				send(batch, sender);
+			} catch(RuntimeException | Error e) {
+				// never leave the other callers waiting
+				batch.forEach(c -> c.result.completeExceptionally(e));
+				throw e;
+			}
+		}
+		Object result = await(call);
+		return result == FALLBACK ? sender.send(request) : result;
+	}
+
+	private List<Call> take() {
+		List<Call> batch = pending;
+		pending = new ArrayList<>();
+		lock.notifyAll();
+		return batch;
+	}
+
+	private void send(List<Call> batch, Sender sender) {
+		if(batch.size() == 1) {
+			batch.get(0).result.complete(FALLBACK);
+			return;
+		}
+		List<Object> calls = new ArrayList<>(batch.size());
+		for(Call call : batch) {
+			Object[] params = new Object[call.request.getParameterCount()];
+			for(int i = 0; i < params.length; ++i) {
+				params[i] = call.request.getParameter(i);
+			}
+			Map<String, Object> struct = new HashMap<>();
+			struct.put("methodName", call.request.getMethodName());
+			struct.put("params", params);
+			calls.add(struct);
+		}
+		XmlRpcRequest multicall = new XmlRpcClientRequestImpl(batch.get(0).request.getConfig(), "system.multicall",
+				new Object[] { calls.toArray() });
+
+		Object response;
+		try {
+			response = sender.send(multicall);
+		} catch(XmlRpcHttpTransportException e) {
+			fail(batch, e);
+			return;
+		} catch(XmlRpcException e) {
+			// a fault is the server refusing the multicall, anything else failed on the way
+			if(e.getCause() != null) {
+				fail(batch, e);
+				return;
+			}
+			response = null;
+		}
+		if(!(response instanceof Object[]) || ((Object[]) response).length != batch.size()) {
+			if(supported) {
+				log.info("Server does not support system.multicall, sending calls one by one");
+				supported = false;
+			}
+			batch.forEach(c -> c.result.complete(FALLBACK));
+			return;
+		}
+		multicalls.increment();
+		batchedCalls.add(batch.size());
+		Object[] results = (Object[]) response;
+		for(int i = 0; i < results.length; ++i) {
+			complete(batch.get(i), results[i]);
+		}
+	}
+
+	private static void complete(Call call, Object result) {
+		if(result instanceof Object[] && ((Object[]) result).length == 1) {
+			call.result.complete(((Object[]) result)[0]);
+		} else if(result instanceof Map && ((Map<?, ?>) result).containsKey("faultCode")) {
+			Map<?, ?> fault = (Map<?, ?>) result;
+			int code = fault.get("faultCode") instanceof Number ? ((Number) fault.get("faultCode")).intValue() : 0;
+			call.result.completeExceptionally(new XmlRpcException(code, String.valueOf(fault.get("faultString"))));
+		} else {
+			call.result.completeExceptionally(new XmlRpcClientException("Unexpected multicall result for "
+					+ call.request.getMethodName() + ": " + result, null));
+		}
+	}
+
+	private static void fail(List<Call> batch, XmlRpcException e) {
+		batch.forEach(c -> c.result.completeExceptionally(e));
+	}
+
+	private static Object await(Call call) throws XmlRpcException {
+		try {
+			return call.result.join();
+		} catch(CompletionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof XmlRpcException) throw (XmlRpcException) cause;
+			if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if(cause instanceof Error) throw (Error) cause;
+			throw e;
+		}
+	}
+}
@@ -1,13 +1,26 @@
 package eu.qedv.tools.ootl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionType;
 import br.eti.kinoshita.testlinkjavaapi.model.Build;
 import br.eti.kinoshita.testlinkjavaapi.model.Execution;
-import br.eti.kinoshita.testlinkjavaapi.model.TestPlan;
 import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
 import eu.qedv.tools.ootl.exception.TestLinkException;
 
@@ -24,6 +37,7 @@ public class TLBuild {
 	protected final TestLink tl;
 
 	protected final TLTestProject project;
+	protected final TLTestPlan plan;
 
 	protected final int planID;
 	protected final String planName;
@@ -31,13 +45,63 @@ public class TLBuild {
 	protected final int buildID;
 	protected final String buildName;
 
-	protected TLBuild(TestLink tl, TLTestProject project, TestPlan plan, Build build) {
+	// latest execution of test cases in this build by test case id
+	private final TLCache<Integer, Optional<TLExecution>> cachedExecutions;
+	// concurrent retrievals of the last execution of a test case share one call
+	private final TLSingleFlight<Integer, Optional<TLExecution>> executionLoads = new TLSingleFlight<>();
+
+	protected TLBuild(TestLink tl, TLTestProject project, TLTestPlan plan, Build build) {
 		this.tl = tl;
 		this.project = project;
-		this.planID = plan.getId();
-		this.planName = plan.getName();
+		this.plan = plan;
+		this.planID = plan.planID;
+		this.planName = plan.planName;
 		this.buildID = build.getId();
 		this.buildName = build.getName();
+		this.cachedExecutions = new TLCache<>(tl.config.cachePolicy, "executions", tl::getMetrics);
+	}
+
+	static ExecutorService newWorkerPool(int parallelism, int tasks, String name) {
+		if(parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be positive, was " + parallelism);
+		}
+		AtomicInteger threads = new AtomicInteger();
+		return Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, tasks)), r -> {
+			Thread thread = new Thread(r, "testlink-" + name + "-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private Optional<TLExecution> loadLastExecution(TLTestCase testcase) {
+		Execution execution;
+		try {
+			execution = tl.call("getLastExecutionResult", api -> api.getLastExecutionResult(planID, testcase
+					.getID(), -1));
+		} catch(TestLinkAPIException e) {
+			throw new TestLinkException("Failed to retrieve last execution result of test case '" + testcase.getName()
+					+ "' in test plan '" + planName + "':", e);
+		}
+		if(execution == null) {
+			log.debug("Test case '" + testcase.getName() + "' not executed in test plan '" + planName + "'");
+			return Optional.empty();
+		}
+		if(execution.getBuildId() != buildID) {
+			log.debug("Test case '" + testcase.getName() + "' not executed in build '" + buildName + "'");
+			return Optional.empty();
+		}
+		return Optional.of(new TLExecution(tl, this, testcase, execution));
+	}
+
+	/**
+	 * Records an execution made through this client in the execution cache
+	 */
+	void executed(TLTestCase testcase, ExecutionStatus status, Integer executionID, int version, String notes) {
+		Execution execution = new Execution(executionID, buildID, null, new Date(), status, planID, null, version,
+				ExecutionType.AUTOMATED, notes);
+		cachedExecutions.put(testcase.getID(), Optional.of(new TLExecution(tl, this, testcase, execution)));
+		// a load started before this execution must not be shared with later callers
+		executionLoads.forget(testcase.getID());
 	}
 
 	/*
@@ -62,26 +126,154 @@ public class TLBuild {
 	 * @return Execution result if testcase executed in this build
 	 */
 	public Optional<TLExecution> getLastExecution(TLTestCase testcase) {
-		Execution execution;
+		return executionLoads.load(testcase.getID(), id -> loadLastExecution(testcase)).map(e -> e
+				.getTestcase() == testcase ? e : new TLExecution(tl, this, testcase, e.execution));
+	}
+
+	/**
+	 * Retrieves the latest execution results of many test cases in this build,
+	 * with up to 8 requests in flight and without using the execution cache
+	 * 
+	 * @see #getLastExecutions(Collection, int, boolean)
+	 */
+	public Map<TLTestCase, TLExecution> getLastExecutions(Collection<TLTestCase> testcases) {
+		return getLastExecutions(testcases, 8, false);
+	}
+
+	/**
+	 * Retrieves the latest execution results of many test cases in this build by
+	 * running the requests concurrently.<br>
+	 * If {@code useCache} is set, test cases found in the execution cache of this
+	 * build are not requested again and retrieved results are added to it. The
+	 * cache is also updated by executions made through this client, which take
+	 * precedence over results retrieved at the same time.
+	 * 
+	 * @param testcases
+	 *            the test cases to look up
+	 * @param parallelism
+	 *            the maximum number of concurrent requests
+	 * @param useCache
+	 *            whether to serve results from the execution cache
+	 * @return the latest executions of all test cases executed in this build, in
+	 *         the order the test cases were passed
+	 * @throws TestLinkException
+	 *             if any execution result could not be retrieved
+	 */
+	public Map<TLTestCase, TLExecution> getLastExecutions(Collection<TLTestCase> testcases, int parallelism,
+			boolean useCache) {
+		// entries may expire while loading, so lookups go to this map instead of the cache
+		Map<Integer, Optional<TLExecution>> loaded = new HashMap<>();
+		List<TLTestCase> pending = new ArrayList<>();
+		for(TLTestCase testcase : testcases) {
+			Optional<TLExecution> cached = useCache ? cachedExecutions.get(testcase.getID()) : null;
+			if(cached != null) {
+				loaded.put(testcase.getID(), cached);
+			} else {
+				pending.add(testcase);
+			}
+		}
+		log.debug("Retrieving last executions of " + pending.size() + " test cases in build '" + buildName + "'");
+
+		if(!pending.isEmpty()) {
+			ExecutorService executor = newWorkerPool(parallelism, pending.size(), "executions");
+			try {
+				List<Future<Optional<TLExecution>>> futures = new ArrayList<>(pending.size());
+				for(TLTestCase testcase : pending) {
+					futures.add(executor.submit(() -> getLastExecution(testcase)));
+				}
+				for(int i = 0; i < pending.size(); ++i) {
+					Optional<TLExecution> execution = futures.get(i).get();
+					if(useCache) {
+						// an execution recorded while loading is more recent
+						Optional<TLExecution> recorded = cachedExecutions.putIfAbsent(pending.get(i).getID(),
+								execution);
+						if(recorded != null) execution = recorded;
+					}
+					loaded.put(pending.get(i).getID(), execution);
+				}
+			} catch(ExecutionException e) {
+				if(e.getCause() instanceof TestLinkException) throw (TestLinkException) e.getCause();
+				throw new TestLinkException("Failed to retrieve last executions in build '" + buildName + "'", e
+						.getCause());
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TestLinkException("Interrupted while retrieving last executions in build '" + buildName
+						+ "'", e);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+
+		Map<TLTestCase, TLExecution> executions = new LinkedHashMap<>();
+		for(TLTestCase testcase : testcases) {
+			Optional<TLExecution> execution = loaded.getOrDefault(testcase.getID(), Optional.empty());
+			execution.ifPresent(e -> executions.put(testcase, e.getTestcase() == testcase ? e : new TLExecution(tl,
+					this, testcase, e.execution)));
+		}
+		return executions;
+	}
+
+	/**
+	 * Executes many test cases in this build, running up to {@code parallelism}
+	 * executions at the same time.
+	 * 
+	 * @param requests
+	 *            the test cases to execute along with their results and notes
+	 * @param parallelism
+	 *            the maximum number of concurrent executions
+	 * @return a report holding the outcome of every request
+	 * @see TLTestCase#execute(TLBuild, eu.qedv.tools.ootl.structure.ResultCode,
+	 *      String)
+	 */
+	public TLExecutionReport executeAll(Collection<TLExecutionRequest> requests, int parallelism) {
+		ExecutorService executor = newWorkerPool(parallelism, requests.size(), "execute");
 		try {
-			execution = tl.api.getLastExecutionResult(planID, testcase.getID(), -1);
-		} catch(TestLinkAPIException e) {
-			throw new TestLinkException("Failed to retrieve last execution result of test case '" + testcase.getName()
-					+ "' in test plan '" + planName + "':", e);
+			return executeAll(requests, executor);
+		} finally {
+			executor.shutdownNow();
 		}
-		if(execution == null) {
-			log.debug("Test case '" + testcase.getName() + "' not executed in test plan '" + planName + "'");
-			return Optional.empty();
+	}
+
+	/**
+	 * Executes many test cases in this build using the given executor. The
+	 * executor is not shut down.
+	 * 
+	 * @param requests
+	 *            the test cases to execute along with their results and notes
+	 * @param executor
+	 *            the executor running the executions
+	 * @return a report holding the outcome of every request
+	 */
+	public TLExecutionReport executeAll(Collection<TLExecutionRequest> requests, ExecutorService executor) {
+		List<TLExecutionRequest> pending = new ArrayList<>(requests);
+		log.debug("Executing " + pending.size() + " test cases in build '" + buildName + "'");
+
+		List<Future<Boolean>> futures = new ArrayList<>(pending.size());
+		for(TLExecutionRequest request : pending) {
+			futures.add(executor.submit(() -> request.testcase.execute(this, request.result, request.notes)));
 		}
-		if(execution.getBuildId() != buildID) {
-			log.debug("Test case '" + testcase.getName() + "' not executed in build '" + buildName + "'");
-			return Optional.empty();
+
+		TLExecutionReport report = new TLExecutionReport();
+		for(int i = 0; i < pending.size(); ++i) {
+			TLExecutionRequest request = pending.get(i);
+			try {
+				report.executed(request, futures.get(i).get());
+			} catch(ExecutionException e) {
+				log.error("Failed to execute test case '" + request.testcase.getName() + "':", e.getCause());
+				report.failed(request, e.getCause());
+			} catch(InterruptedException e) {
+				futures.forEach(f -> f.cancel(true));
+				Thread.currentThread().interrupt();
+				throw new TestLinkException("Interrupted while executing test cases in build '" + buildName + "'", e);
+			}
 		}
-		return Optional.of(new TLExecution(tl, this, testcase, execution));
+		return report;
 	}
 
 	/**
-	 * Adds a test case to this test plan
+	 * Adds a test case to this test plan.<br>
+	 * Test cases known to be linked to the test plan, because they were added
+	 * through any build of the plan before, are not added again.
 	 * 
 	 * @param testcase
 	 *            the test case to add
@@ -90,7 +282,30 @@ public class TLBuild {
 	 */
 	public int addTestcaseToTestPlan(TLTestCase testcase) {
 		try {
-			tl.api.addTestCaseToTestPlan(project.getID(), planID, testcase.getID(), testcase.getVersion(), -1, 0, 0);
+			return linkTestCase(testcase);
+		} catch(TestLinkAPIException e) {
+			log.error("Failed to add test case '" + testcase.getName() + "' to test plan '" + planName + "':", e);
+			return -1;
+		}
+	}
+
+	/**
+	 * Like {@link #addTestcaseToTestPlan(TLTestCase)}, throwing a failed call
+	 * instead of returning -1
+	 * 
+	 * @return 0 if linked, the linked version (>0) if already in test plan
+	 * @throws TestLinkAPIException
+	 *             if the test case could not be added
+	 */
+	int linkTestCase(TLTestCase testcase) {
+		Integer linked = plan.getLinkedVersion(testcase.getID());
+		if(linked != null) {
+			return linked;
+		}
+		try {
+			tl.call("addTestCaseToTestPlan", api -> api.addTestCaseToTestPlan(project.getID(), planID, testcase
+					.getID(), testcase.getVersion(), -1, 0, 0));
+			plan.linked(testcase.getID(), testcase.getVersion());
 			return 0;
 		} catch(TestLinkAPIException e) {
 			/*
@@ -99,14 +314,15 @@ public class TLBuild {
 			 * test case is already added.
 			 */
 			String message = e.getMessage();
-			if(!message.matches(".*Test Case version number.*requested version.*is already linked to Test Plan.*")) {
-				log.error("Failed to add test case '" + testcase.getName() + "' to test plan '" + planName + "':", e);
-				return -1;
+			if(message == null || !message.matches(".*Test Case version number.*requested version.*is already linked to Test Plan.*")) {
+				throw e;
 			}
 			String version = message.replaceAll(".*version number ", "")
 					.replaceAll(" <> \\d+ \\(requested version\\).*", "");
 			log.debug("Test case '" + testcase.getName() + "' already in test plan '" + planName + "'");
-			return Integer.parseInt(version);
+			int v = Integer.parseInt(version);
+			plan.linked(testcase.getID(), v);
+			return v;
 		}
 	}
 }
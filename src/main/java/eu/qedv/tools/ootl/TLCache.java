@@ -0,0 +1,146 @@
+package eu.qedv.tools.ootl;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import eu.qedv.tools.ootl.metrics.TLMetrics;
+
+/**
+ * Concurrent keyed cache honouring a {@link CachePolicy}.<br>
+ * Values are loaded outside of the map, so loading one key never blocks
+ * others. Concurrent loads of the same key are coalesced into one. Empty
+ * {@code Optional}s are negative entries and expire after the negative time to
+ * live. Lookups and evictions are recorded under the name of the cache.
+ * 
+ * @author dimasinger
+ *
+ */
+class TLCache<K, V> {
+
+	private final CachePolicy policy;
+	private final String name;
+	private final Supplier<TLMetrics> metrics;
+	private final Map<K, TLCacheEntry<V>> entries = new ConcurrentHashMap<>();
+	private final AtomicBoolean evicting = new AtomicBoolean();
+	private final TLSingleFlight<K, V> loads = new TLSingleFlight<>();
+
+	TLCache(CachePolicy policy, String name, Supplier<TLMetrics> metrics) {
+		this.policy = policy;
+		this.name = name;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the cached value, null if absent, expired or reclaimed
+	 */
+	V get(K key) {
+		V value = peek(key);
+		if(value != null) {
+			metrics.get().cacheHit(name);
+		} else {
+			metrics.get().cacheMiss(name);
+		}
+		return value;
+	}
+
+	/**
+	 * Like {@link #get(Object)}, without counting as a lookup
+	 */
+	private V peek(K key) {
+		TLCacheEntry<V> entry = entries.get(key);
+		if(entry == null) return null;
+		V value = entry.get(System.nanoTime());
+		if(value == null && entries.remove(key, entry)) {
+			metrics.get().cacheEviction(name);
+		}
+		return value;
+	}
+
+	/**
+	 * Retrieves a value, loading and caching it if absent. Threads asking for a
+	 * key while it is loaded wait for that load instead of loading it again. If
+	 * a value was put for the key in the meantime, that value is returned.
+	 */
+	V get(K key, Function<K, V> loader) {
+		V value = get(key);
+		if(value != null) return value;
+		return loads.load(key, k -> {
+			// a load finishing between the lookup above and this one
+			V cached = peek(k);
+			if(cached != null) return cached;
+			V loaded = loader.apply(k);
+			cached = putIfAbsent(k, loaded);
+			return cached == null ? loaded : cached;
+		});
+	}
+
+	/**
+	 * @return the value already cached for the key, null if the value was
+	 *         stored
+	 */
+	V putIfAbsent(K key, V value) {
+		TLCacheEntry<V> entry = TLCacheEntry.of(policy, value, isNegative(value));
+		while(true) {
+			TLCacheEntry<V> existing = entries.putIfAbsent(key, entry);
+			if(existing == null) {
+				evictIfNeeded();
+				return null;
+			}
+			V cached = existing.get(System.nanoTime());
+			if(cached != null) return cached;
+			if(entries.replace(key, existing, entry)) {
+				return null;
+			}
+		}
+	}
+
+	void put(K key, V value) {
+		entries.put(key, TLCacheEntry.of(policy, value, isNegative(value)));
+		evictIfNeeded();
+	}
+
+	void invalidate(K key) {
+		entries.remove(key);
+	}
+
+	void clear() {
+		entries.clear();
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	private static boolean isNegative(Object value) {
+		return value instanceof Optional && !((Optional<?>) value).isPresent();
+	}
+
+	private void evictIfNeeded() {
+		if(entries.size() <= policy.maximumSize || !evicting.compareAndSet(false, true)) return;
+		try {
+			TLMetrics recorder = metrics.get();
+			long now = System.nanoTime();
+			entries.entrySet().removeIf(e -> {
+				boolean stale = e.getValue().isStale(now);
+				if(stale) recorder.cacheEviction(name);
+				return stale;
+			});
+			long excess = entries.size() - policy.maximumSize;
+			if(excess <= 0) return;
+			// evict a batch of least recently used entries to amortize the scan
+			long batch = Math.max(excess, policy.maximumSize / 16);
+			entries.entrySet().stream().sorted(Comparator.comparingLong(e -> e.getValue().lastAccess)).limit(batch)
+					.forEach(e -> {
+						if(entries.remove(e.getKey(), e.getValue())) recorder.cacheEviction(name);
+					});
+		} finally {
+			evicting.set(false);
+		}
+	}
+}
+
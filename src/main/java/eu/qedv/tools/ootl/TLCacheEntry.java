@@ -0,0 +1,55 @@
+package eu.qedv.tools.ootl;
+
+import java.lang.ref.Reference;
+
+/**
+ * Single cached value with expiry and optional soft reference, used by
+ * {@link TLCache} and {@link TLCachedValue}
+ * 
+ * @author dimasinger
+ *
+ */
+class TLCacheEntry<V> {
+
+	private final V strong;
+	private final Reference<V> soft;
+	private final long expiresAt;
+	private final boolean trackAccess;
+	volatile long lastAccess;
+
+	private TLCacheEntry(V value, Reference<V> soft, long now, long expiresAt, boolean trackAccess) {
+		this.strong = soft == null ? value : null;
+		this.soft = soft;
+		this.expiresAt = expiresAt;
+		this.trackAccess = trackAccess;
+		this.lastAccess = now;
+	}
+
+	static <V> TLCacheEntry<V> of(CachePolicy policy, V value, boolean negative) {
+		long now = System.nanoTime();
+		// access times only matter for size bounded caches
+		return new TLCacheEntry<>(value, policy.softValues ? policy.softReference(value) : null, now,
+				policy.expiresAt(now, negative),
+				policy.maximumSize != Long.MAX_VALUE);
+	}
+
+	/**
+	 * @return the value, null if expired or reclaimed
+	 */
+	V get(long now) {
+		if(isExpired(now)) return null;
+		if(trackAccess) lastAccess = now;
+		return soft == null ? strong : soft.get();
+	}
+
+	/**
+	 * @return true if expired or reclaimed, without counting as an access
+	 */
+	boolean isStale(long now) {
+		return isExpired(now) || (soft != null && soft.get() == null);
+	}
+
+	private boolean isExpired(long now) {
+		return expiresAt != Long.MAX_VALUE && now - expiresAt >= 0;
+	}
+}
@@ -0,0 +1,68 @@
+package eu.qedv.tools.ootl;
+
+import java.util.function.Supplier;
+
+import eu.qedv.tools.ootl.metrics.TLMetrics;
+
+/**
+ * A single lazily loaded value, like the children of a test suite, honouring
+ * the time to live and soft references of a {@link CachePolicy}.<br>
+ * Loading is left to the owner, which typically guards it with a lock. The
+ * owner reports lookups through {@link #lookup()}, other reads use
+ * {@link #get()}.
+ * 
+ * @author dimasinger
+ *
+ */
+class TLCachedValue<V> {
+
+	private final CachePolicy policy;
+	private final String name;
+	private final Supplier<TLMetrics> metrics;
+	private volatile TLCacheEntry<V> entry = null;
+
+	TLCachedValue(CachePolicy policy, String name, Supplier<TLMetrics> metrics) {
+		this.policy = policy;
+		this.name = name;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the cached value, null if not loaded, expired or reclaimed
+	 */
+	V get() {
+		TLCacheEntry<V> current = entry;
+		if(current == null) return null;
+		V value = current.get(System.nanoTime());
+		if(value == null) {
+			synchronized(this) {
+				if(entry == current) {
+					entry = null;
+					metrics.get().cacheEviction(name);
+				}
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Like {@link #get()}, counting as a hit or miss of the cache
+	 */
+	V lookup() {
+		V value = get();
+		if(value != null) {
+			metrics.get().cacheHit(name);
+		} else {
+			metrics.get().cacheMiss(name);
+		}
+		return value;
+	}
+
+	synchronized void set(V value) {
+		entry = value == null ? null : TLCacheEntry.of(policy, value, false);
+	}
+
+	synchronized void clear() {
+		entry = null;
+	}
+}
@@ -0,0 +1,72 @@
+package eu.qedv.tools.ootl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Cached children of a test project or test suite, kept in testlink's order
+ * and indexed by name for constant time lookups.<br>
+ * If several children share a name, lookups return the first one.<br>
+ * Children are only ever appended, into an array growing like an
+ * {@code ArrayList}, so adding many children one by one costs no more than
+ * adding them at once and readers never lock.
+ *
+ * @author dimasinger
+ *
+ */
+class TLChildren<T> {
+
+	private final Function<T, String> nameOf;
+	private final Map<String, T> byName;
+
+	// written under the lock, the array before the size, so readers seeing a
+	// size see at least that many children in the array
+	private volatile Object[] children;
+	private volatile int size;
+
+	TLChildren(Collection<T> children, Function<T, String> nameOf) {
+		this.nameOf = nameOf;
+		this.children = children.toArray(new Object[Math.max(10, children.size())]);
+		this.size = children.size();
+		this.byName = new ConcurrentHashMap<>(Math.max(16, children.size() * 4 / 3 + 1));
+		for(T child : children) {
+			byName.putIfAbsent(nameOf.apply(child), child);
+		}
+	}
+
+	/**
+	 * @return an unmodifiable list of the children in order, not seeing
+	 *         children added later
+	 */
+	@SuppressWarnings("unchecked")
+	List<T> asList() {
+		int current = size;
+		return Collections.unmodifiableList((List<T>) Arrays.asList(children).subList(0, current));
+	}
+
+	Optional<T> get(String name) {
+		return Optional.ofNullable(byName.get(name));
+	}
+
+	int size() {
+		return size;
+	}
+
+	// synchronized so the list and the index agree on the first child per name
+	synchronized void add(T child) {
+		Object[] array = children;
+		if(size == array.length) {
+			array = Arrays.copyOf(array, array.length + (array.length >> 1));
+			children = array;
+		}
+		array[size] = child;
+		size = size + 1;
+		byName.putIfAbsent(nameOf.apply(child), child);
+	}
+}
@@ -0,0 +1,114 @@
+package eu.qedv.tools.ootl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Outcome of a bulk test case creation, holding the created test case or the
+ * error of every {@link TLTestCaseRequest} in the order they were passed. A
+ * request passed several times has an outcome for every time it was passed.
+ * 
+ * @author dimasinger
+ *
+ */
+public class TLCreationReport {
+
+	// outcome i belongs to request i, a null test case means it failed
+	private final List<TLTestCaseRequest> requests = new ArrayList<>();
+	private final List<TLTestCase> testcases = new ArrayList<>();
+	private final List<Throwable> errors = new ArrayList<>();
+
+	protected TLCreationReport() {
+	}
+
+	void created(TLTestCaseRequest request, TLTestCase testcase) {
+		requests.add(request);
+		testcases.add(testcase);
+		errors.add(null);
+	}
+
+	void failed(TLTestCaseRequest request, Throwable error) {
+		requests.add(request);
+		testcases.add(null);
+		errors.add(error);
+	}
+
+	/*
+	 * Getters
+	 */
+
+	/**
+	 * @return all requests in the order they were passed
+	 */
+	public List<TLTestCaseRequest> getRequests() {
+		return Collections.unmodifiableList(new ArrayList<>(requests));
+	}
+
+	/**
+	 * @return the requests whose test case was created
+	 */
+	public List<TLTestCaseRequest> getCreated() {
+		return filter(true);
+	}
+
+	/**
+	 * @return the requests whose test case could not be created
+	 */
+	public List<TLTestCaseRequest> getFailed() {
+		return filter(false);
+	}
+
+	/**
+	 * @return An {@code Optional} containing the test case created for the
+	 *         request at the given position
+	 */
+	public Optional<TLTestCase> getTestCase(int index) {
+		return Optional.ofNullable(testcases.get(index));
+	}
+
+	/**
+	 * @return An {@code Optional} containing the test case first created for the
+	 *         request
+	 */
+	public Optional<TLTestCase> getTestCase(TLTestCaseRequest request) {
+		for(int i = 0; i < requests.size(); ++i) {
+			if(requests.get(i) == request && testcases.get(i) != null) return Optional.of(testcases.get(i));
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * @return the exception thrown while creating the test case at the given
+	 *         position, if any
+	 */
+	public Optional<Throwable> getError(int index) {
+		return Optional.ofNullable(errors.get(index));
+	}
+
+	/**
+	 * @return the first exception thrown while creating the test case, if any
+	 */
+	public Optional<Throwable> getError(TLTestCaseRequest request) {
+		for(int i = 0; i < requests.size(); ++i) {
+			if(requests.get(i) == request && errors.get(i) != null) return Optional.of(errors.get(i));
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * @return true if all test cases were created
+	 */
+	public boolean isSuccess() {
+		return !testcases.contains(null);
+	}
+
+	private List<TLTestCaseRequest> filter(boolean created) {
+		List<TLTestCaseRequest> filtered = new ArrayList<>();
+		for(int i = 0; i < requests.size(); ++i) {
+			if((testcases.get(i) != null) == created) filtered.add(requests.get(i));
+		}
+		return Collections.unmodifiableList(filtered);
+	}
+}
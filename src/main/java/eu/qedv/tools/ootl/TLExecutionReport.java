@@ -0,0 +1,117 @@
+package eu.qedv.tools.ootl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Outcome of a bulk execution, holding the result of every
+ * {@link TLExecutionRequest} in the order they were passed. A request passed
+ * several times has an outcome for every time it was passed.
+ * 
+ * @author dimasinger
+ *
+ */
+public class TLExecutionReport {
+
+	// outcome i belongs to request i
+	private final List<TLExecutionRequest> requests = new ArrayList<>();
+	private final List<Boolean> outcomes = new ArrayList<>();
+	private final List<Throwable> errors = new ArrayList<>();
+
+	protected TLExecutionReport() {
+	}
+
+	void executed(TLExecutionRequest request, boolean success) {
+		requests.add(request);
+		outcomes.add(success);
+		errors.add(null);
+	}
+
+	void failed(TLExecutionRequest request, Throwable error) {
+		requests.add(request);
+		outcomes.add(false);
+		errors.add(error);
+	}
+
+	/*
+	 * Getters
+	 */
+
+	/**
+	 * @return all requests in the order they were passed
+	 */
+	public List<TLExecutionRequest> getRequests() {
+		return Collections.unmodifiableList(new ArrayList<>(requests));
+	}
+
+	/**
+	 * @return the requests that were executed successfully
+	 */
+	public List<TLExecutionRequest> getExecuted() {
+		return filter(true);
+	}
+
+	/**
+	 * @return the requests that could not be executed
+	 */
+	public List<TLExecutionRequest> getFailed() {
+		return filter(false);
+	}
+
+	/**
+	 * @return true if the request at the given position was executed
+	 *         successfully
+	 */
+	public boolean isExecuted(int index) {
+		return outcomes.get(index);
+	}
+
+	/**
+	 * @return true if the request was executed successfully every time it was
+	 *         passed
+	 */
+	public boolean isExecuted(TLExecutionRequest request) {
+		boolean found = false;
+		for(int i = 0; i < requests.size(); ++i) {
+			if(requests.get(i) != request) continue;
+			if(!outcomes.get(i)) return false;
+			found = true;
+		}
+		return found;
+	}
+
+	/**
+	 * @return the exception thrown while executing the request at the given
+	 *         position, if any
+	 */
+	public Optional<Throwable> getError(int index) {
+		return Optional.ofNullable(errors.get(index));
+	}
+
+	/**
+	 * @return the first exception thrown while executing the request, if any
+	 */
+	public Optional<Throwable> getError(TLExecutionRequest request) {
+		for(int i = 0; i < requests.size(); ++i) {
+			if(requests.get(i) == request && errors.get(i) != null) return Optional.of(errors.get(i));
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * @return true if all requests were executed successfully
+	 */
+	public boolean isSuccess() {
+		return !outcomes.contains(false);
+	}
+
+	private List<TLExecutionRequest> filter(boolean success) {
+		List<TLExecutionRequest> filtered = new ArrayList<>();
+		for(int i = 0; i < requests.size(); ++i) {
+			if(outcomes.get(i) == success) filtered.add(requests.get(i));
+		}
+		return Collections.unmodifiableList(filtered);
+	}
+}
@@ -0,0 +1,49 @@
+package eu.qedv.tools.ootl;
+
+import eu.qedv.tools.ootl.structure.ResultCode;
+
+/**
+ * A pending execution of a TLTestCase, as passed to
+ * {@link TLBuild#executeAll(java.util.Collection, int)}
+ * 
+ * @author dimasinger
+ *
+ */
+public class TLExecutionRequest {
+
+	protected final TLTestCase testcase;
+	protected final ResultCode result;
+	protected final String notes;
+
+	/**
+	 * Creates an execution request
+	 * 
+	 * @param testcase
+	 *            the test case to execute
+	 * @param result
+	 *            the result code
+	 * @param notes
+	 *            the execution notes
+	 */
+	public TLExecutionRequest(TLTestCase testcase, ResultCode result, String notes) {
+		this.testcase = testcase;
+		this.result = result;
+		this.notes = notes;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	public TLTestCase getTestcase() {
+		return testcase;
+	}
+
+	public ResultCode getResult() {
+		return result;
+	}
+
+	public String getNotes() {
+		return notes;
+	}
+}
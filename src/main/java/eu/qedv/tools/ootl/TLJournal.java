@@ -0,0 +1,661 @@
+package eu.qedv.tools.ootl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import br.eti.kinoshita.testlinkjavaapi.model.TestCaseStep;
+import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
+import eu.qedv.tools.ootl.exception.MissingPermissionException;
+import eu.qedv.tools.ootl.exception.TestLinkException;
+import eu.qedv.tools.ootl.structure.ResultCode;
+import eu.qedv.tools.ootl.structure.TLTestResult;
+import eu.qedv.tools.ootl.structure.TLTestStep;
+
+/**
+ * Write-behind journal for executions, test case creations and updates.
+ * <p>
+ * Operations are appended to a memory mapped file and return immediately. A
+ * background thread replays them in order through the handles of a
+ * {@link TestLink} connection and checkpoints its progress in the file, so
+ * pending operations survive a crash of the JVM and are resumed by
+ * {@link #open(TestLink, Path)}. While testlink is unreachable the replay is
+ * retried with growing delays. Operations that cannot be replayed while
+ * testlink is reachable (like executions of unknown test cases) are logged and
+ * dropped, like records that cannot be read.
+ * <p>
+ * An operation interrupted by a crash is checked against testlink before it
+ * is replayed again: executions are skipped if the last execution in the build
+ * already matches, creations if the test case exists. Updates only change test
+ * cases that differ anyway.
+ *
+ * @author dimasinger
+ *
+ */
+public class TLJournal implements Closeable {
+
+	private static final Log log = LogFactory.getLog(TLJournal.class);
+
+	private static final int MAGIC = 0x544C4A4E;
+	private static final int FORMAT_VERSION = 1;
+
+	// magic, version, checkpoint, in flight record
+	private static final int CHECKPOINT_OFFSET = 8;
+	private static final int IN_FLIGHT_OFFSET = 16;
+	private static final int HEADER_SIZE = 32;
+	// length and checksum of a record
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	private static final int INITIAL_SIZE = 1 << 20;
+	private static final long MIN_RETRY_DELAY_MILLIS = 100;
+	private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+	private static final byte EXECUTE = 1;
+	private static final byte CREATE_TEST_CASE = 2;
+	private static final byte UPDATE_TEST_CASE = 3;
+
+	private final TestLink tl;
+	private final Path file;
+	private final boolean force;
+	private final FileChannel channel;
+
+	// guards all fields below, signalled when records are appended or replayed
+	private final Object lock = new Object();
+	private MappedByteBuffer buffer;
+	private int end;
+	private int checkpoint;
+	private int pending;
+	private boolean closed = false;
+	// why replaying stopped for good, null while replaying
+	private TestLinkException failure = null;
+
+	private final Thread drainer;
+
+	private TLJournal(TestLink tl, Path file, boolean force) throws IOException {
+		this.tl = tl;
+		this.file = file;
+		this.force = force;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		boolean fresh = channel.size() < HEADER_SIZE;
+		buffer = channel.map(MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, channel.size()));
+		if(fresh) {
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, FORMAT_VERSION);
+			buffer.putLong(CHECKPOINT_OFFSET, HEADER_SIZE);
+			buffer.putLong(IN_FLIGHT_OFFSET, -1);
+			buffer.putInt(HEADER_SIZE, 0);
+		} else if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+			channel.close();
+			throw new IOException("Not a journal or unsupported format: " + file);
+		}
+		checkpoint = (int) buffer.getLong(CHECKPOINT_OFFSET);
+		// the log ends at the first incomplete or corrupt record
+		end = checkpoint;
+		for(int next = recordEnd(end); next > 0; next = recordEnd(end)) {
+			end = next;
+			++pending;
+		}
+		log.debug("Opened journal " + file + " with " + pending + " pending operations");
+
+		drainer = new Thread(this::drain, "testlink-journal");
+		drainer.setDaemon(true);
+		drainer.start();
+	}
+
+	/**
+	 * Opens a journal, creating the file if it does not exist, and starts
+	 * replaying pending operations
+	 *
+	 * @see #open(TestLink, Path, boolean)
+	 */
+	public static TLJournal open(TestLink tl, Path file) {
+		return open(tl, file, false);
+	}
+
+	/**
+	 * Opens a journal, creating the file if it does not exist, and starts
+	 * replaying pending operations
+	 *
+	 * @param force
+	 *            whether every operation is forced to the storage device before
+	 *            returning. Without, operations survive a crash of the JVM but not
+	 *            of the operating system.
+	 * @throws TestLinkException
+	 *             if the file cannot be opened or is not a journal
+	 */
+	public static TLJournal open(TestLink tl, Path file, boolean force) {
+		try {
+			return new TLJournal(tl, file, force);
+		} catch(IOException e) {
+			throw new TestLinkException("Failed to open journal " + file, e);
+		}
+	}
+
+	/*
+	 * Records
+	 */
+
+	private static class Record {
+		final int offset;
+		final int next;
+		final byte type;
+		final String project;
+		final List<String> suitePath;
+		final String testcase;
+		// executions
+		String plan;
+		String build;
+		ResultCode result;
+		String notes;
+		// creations and updates
+		String summary;
+		List<String> steps;
+
+		Record(int offset, int next, byte type, String project, List<String> suitePath, String testcase) {
+			this.offset = offset;
+			this.next = next;
+			this.type = type;
+			this.project = project;
+			this.suitePath = suitePath;
+			this.testcase = testcase;
+		}
+
+		String describe() {
+			String key = project + "/" + String.join("/", suitePath) + ":" + testcase;
+			switch(type) {
+			case EXECUTE:
+				return "execution of " + key + " in " + plan + ":" + build;
+			case CREATE_TEST_CASE:
+				return "creation of " + key;
+			default:
+				return "update of " + key;
+			}
+		}
+	}
+
+	private byte[] payload(int offset) {
+		if(offset + RECORD_HEADER_SIZE > buffer.capacity()) return null;
+		int length = buffer.getInt(offset);
+		if(length <= 0 || offset + RECORD_HEADER_SIZE + length > buffer.capacity()) return null;
+		byte[] payload = new byte[length];
+		for(int i = 0; i < length; ++i) {
+			payload[i] = buffer.get(offset + RECORD_HEADER_SIZE + i);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		if((int) crc.getValue() != buffer.getInt(offset + 4)) {
+			log.warn("Ignoring corrupt journal record at " + offset + " in " + file);
+			return null;
+		}
+		return payload;
+	}
+
+	/**
+	 * @return the offset following a complete record, -1 if there is none at the
+	 *         offset
+	 */
+	private int recordEnd(int offset) {
+		byte[] payload = payload(offset);
+		return payload == null ? -1 : offset + RECORD_HEADER_SIZE + payload.length;
+	}
+
+	private Record readRecord(int offset) throws IOException {
+		byte[] payload = payload(offset);
+		if(payload == null) {
+			throw new IOException("No complete record at " + offset);
+		}
+		try {
+			return parseRecord(offset, payload);
+		} catch(RuntimeException e) {
+			throw new IOException("Malformed record at " + offset, e);
+		}
+	}
+
+	private static Record parseRecord(int offset, byte[] payload) throws IOException {
+		int length = payload.length;
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		byte type = in.readByte();
+		String project = in.readUTF();
+		int n = in.readInt();
+		List<String> suitePath = new ArrayList<>(n);
+		for(int i = 0; i < n; ++i) {
+			suitePath.add(in.readUTF());
+		}
+		Record record = new Record(offset, offset + RECORD_HEADER_SIZE + length, type, project, suitePath, in
+				.readUTF());
+		if(type == EXECUTE) {
+			record.plan = in.readUTF();
+			record.build = in.readUTF();
+			record.result = ResultCode.values()[in.readByte()];
+			record.notes = readString(in);
+		} else {
+			record.summary = readString(in);
+			int stepCount = in.readInt();
+			record.steps = new ArrayList<>(stepCount);
+			for(int i = 0; i < stepCount; ++i) {
+				record.steps.add(readString(in));
+			}
+		}
+		return record;
+	}
+
+	// strings of arbitrary length, writeUTF is limited to 64k
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static DataOutputStream header(ByteArrayOutputStream bytes, byte type, String project,
+			List<String> suitePath, String testcase) throws IOException {
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(type);
+		out.writeUTF(project);
+		out.writeInt(suitePath.size());
+		for(String suite : suitePath) {
+			out.writeUTF(suite);
+		}
+		out.writeUTF(testcase);
+		return out;
+	}
+
+	private static void writeSteps(DataOutputStream out, String summary, TLTestStep result) throws IOException {
+		writeString(out, summary);
+		List<TestCaseStep> steps = result.toSteps(-1);
+		out.writeInt(steps.size());
+		for(TestCaseStep step : steps) {
+			writeString(out, step.getActions());
+		}
+	}
+
+	private void append(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		synchronized(lock) {
+			if(closed) {
+				throw new IllegalStateException("Journal " + file + " is closed");
+			}
+			try {
+				// room for the record and the terminating zero length
+				int required = end + RECORD_HEADER_SIZE + payload.length + 4;
+				if(required > buffer.capacity()) {
+					grow(required);
+				}
+				// the length is written last, so a torn record ends the log
+				buffer.putInt(end + RECORD_HEADER_SIZE + payload.length, 0);
+				buffer.putInt(end + 4, (int) crc.getValue());
+				for(int i = 0; i < payload.length; ++i) {
+					buffer.put(end + RECORD_HEADER_SIZE + i, payload[i]);
+				}
+				buffer.putInt(end, payload.length);
+				if(force) {
+					buffer.force();
+				}
+			} catch(IOException e) {
+				throw new TestLinkException("Failed to append to journal " + file, e);
+			}
+			end += RECORD_HEADER_SIZE + payload.length;
+			++pending;
+			lock.notifyAll();
+		}
+	}
+
+	private void grow(int required) throws IOException {
+		long size = buffer.capacity();
+		while(size < required) {
+			size *= 2;
+		}
+		if(size > Integer.MAX_VALUE) {
+			throw new IOException("Journal " + file + " is full");
+		}
+		buffer.force();
+		buffer = channel.map(MapMode.READ_WRITE, 0, size);
+	}
+
+	/*
+	 * Replay
+	 */
+
+	private void drain() {
+		long delay = MIN_RETRY_DELAY_MILLIS;
+		while(true) {
+			Record record;
+			boolean resumed;
+			synchronized(lock) {
+				while(!closed && checkpoint == end) {
+					try {
+						lock.wait();
+					} catch(InterruptedException e) {
+						return;
+					}
+				}
+				if(closed) return;
+				int next = recordEnd(checkpoint);
+				if(next < 0) {
+					// the records were complete when appended or opened, the file changed underneath
+					failure = new TestLinkException("Journal " + file + " lost its record at " + checkpoint
+							+ ", stopping replay");
+					log.error(failure.getMessage());
+					lock.notifyAll();
+					return;
+				}
+				try {
+					record = readRecord(checkpoint);
+				} catch(IOException e) {
+					log.error("Dropping unreadable record at " + checkpoint + " of journal " + file, e);
+					advance(next);
+					continue;
+				}
+				resumed = buffer.getLong(IN_FLIGHT_OFFSET) == record.offset;
+				buffer.putLong(IN_FLIGHT_OFFSET, record.offset);
+			}
+
+			boolean done;
+			try {
+				done = replay(record, resumed);
+			} catch(RuntimeException e) {
+				log.debug("Failed to replay " + record.describe(), e);
+				// calls that did not reach testlink are retried, errors testlink reported are final
+				done = !TestLink.isTransportError(e) && dropIfReachable(record, e.getMessage());
+			}
+
+			synchronized(lock) {
+				if(done) {
+					advance(record.next);
+				}
+			}
+			if(done) {
+				delay = MIN_RETRY_DELAY_MILLIS;
+			} else {
+				log.debug("Testlink unreachable, retrying " + record.describe() + " in " + delay + "ms");
+				try {
+					Thread.sleep(delay);
+				} catch(InterruptedException e) {
+					return;
+				}
+				delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+			}
+		}
+	}
+
+	// must hold the lock
+	private void advance(int next) {
+		checkpoint = next;
+		--pending;
+		if(checkpoint == end) {
+			// everything replayed, start over at the beginning of the file
+			checkpoint = end = HEADER_SIZE;
+			buffer.putInt(HEADER_SIZE, 0);
+		}
+		buffer.putLong(CHECKPOINT_OFFSET, checkpoint);
+		buffer.putLong(IN_FLIGHT_OFFSET, -1);
+		if(force) {
+			buffer.force();
+		}
+		lock.notifyAll();
+	}
+
+	/**
+	 * @return true if the record was replayed or dropped, false to retry it
+	 */
+	private boolean replay(Record record, boolean resumed) {
+		Optional<TLTestSuite> suite = tl.getTestProject(record.project).flatMap(p -> p.getTestSuiteByPath(
+				record.suitePath));
+		if(!suite.isPresent()) {
+			return dropIfReachable(record, "test suite not found");
+		}
+		Optional<TLTestCase> testcase = suite.get().getTestCase(record.testcase);
+
+		switch(record.type) {
+		case EXECUTE:
+			Optional<TLBuild> build = findBuild(suite.get().project, record);
+			if(!testcase.isPresent() || !build.isPresent()) {
+				return dropIfReachable(record, "test case or build not found");
+			}
+			// notes of executed versions other than the current one get a suffix
+			if(resumed && build.get().getLastExecution(testcase.get()).filter(e -> e
+					.getExecutionResult() == record.result && e.getExecutionNotes() != null && e.getExecutionNotes()
+							.startsWith(record.notes.trim())).isPresent()) {
+				log.debug("Interrupted " + record.describe() + " already reported");
+				return true;
+			}
+			return testcase.get().executeOrThrow(build.get(), record.result, record.notes) || dropIfReachable(record,
+					"execution disabled");
+		case CREATE_TEST_CASE:
+			if(testcase.isPresent()) {
+				log.debug("Test case of " + record.describe() + " already exists");
+				return true;
+			}
+			try {
+				suite.get().createTestCase(record.testcase, record.summary, toTestStep(record.steps));
+				return true;
+			} catch(MissingPermissionException e) {
+				log.warn("Dropping " + record.describe() + ": " + e.getMessage());
+				return true;
+			}
+		default:
+			if(!testcase.isPresent()) {
+				return dropIfReachable(record, "test case not found");
+			}
+			testcase.get().updateOrThrow(record.summary, toTestStep(record.steps));
+			return true;
+		}
+	}
+
+	private Optional<TLBuild> findBuild(TLTestProject project, Record record) {
+		Optional<TLBuild> build = project.getBuild(record.plan, record.build);
+		if(!build.isPresent() && tl.config.createBuild) {
+			return Optional.of(project.getOrCreateBuild(record.plan, record.build));
+		}
+		return build;
+	}
+
+	private static TLTestStep toTestStep(List<String> steps) {
+		TLTestResult result = new TLTestResult();
+		for(String step : steps) {
+			new TLTestStep(result).setName(step).setResult(ResultCode.SUCCESS);
+		}
+		return result;
+	}
+
+	/**
+	 * Drops a record that failed if testlink is reachable, the failure is
+	 * permanent then
+	 *
+	 * @return true if the record was dropped, false to retry it
+	 */
+	private boolean dropIfReachable(Record record, String reason) {
+		try {
+			tl.call("ping", api -> api.ping());
+		} catch(TestLinkAPIException e) {
+			return false;
+		}
+		log.warn("Dropping " + record.describe() + ": " + reason);
+		return true;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	/**
+	 * @return the number of operations not replayed yet
+	 */
+	public int getPending() {
+		synchronized(lock) {
+			return pending;
+		}
+	}
+
+	/**
+	 * @return An {@code Optional} containing the reason replaying stopped, if
+	 *         it stopped before the journal was closed
+	 */
+	public Optional<TestLinkException> getFailure() {
+		synchronized(lock) {
+			return Optional.ofNullable(failure);
+		}
+	}
+
+	/**
+	 * Waits until all operations appended so far are replayed
+	 *
+	 * @return true if all operations were replayed, false on timeout
+	 * @throws TestLinkException
+	 *             if replaying stopped for good, the pending operations are
+	 *             kept in the file
+	 */
+	public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized(lock) {
+			while(pending > 0) {
+				if(failure != null) throw new TestLinkException(failure.getMessage(), failure);
+				long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if(remaining <= 0) return false;
+				lock.wait(remaining);
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Operations
+	 */
+
+	/**
+	 * Journals the execution of a test case
+	 *
+	 * @see TLTestCase#execute(TLBuild, ResultCode, String)
+	 */
+	public void execute(TLTestCase testcase, TLBuild build, ResultCode result, String notes) {
+		execute(testcase.project.getName(), suitePath(testcase.getParent()), testcase.getName(), build.getPlanName(),
+				build.getBuildName(), result, notes);
+	}
+
+	/**
+	 * Journals the execution of a test case identified by names. The build is
+	 * created on replay if missing and creating builds is permitted.
+	 *
+	 * @see TLTestCase#execute(TLBuild, ResultCode, String)
+	 */
+	public void execute(String project, List<String> suitePath, String testcase, String testPlan, String build,
+			ResultCode result, String notes) {
+		if(result == ResultCode.NOT_RUN) {
+			log.warn("Test case '" + testcase + "' not run! Not journaling execution");
+			return;
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = header(bytes, EXECUTE, project, suitePath, testcase);
+			out.writeUTF(testPlan);
+			out.writeUTF(build);
+			out.writeByte(result.ordinal());
+			writeString(out, notes);
+			append(bytes.toByteArray());
+		} catch(IOException e) {
+			throw new TestLinkException("Failed to journal execution of test case '" + testcase + "'", e);
+		}
+	}
+
+	/**
+	 * Journals the creation of a test case in an existing test suite. Nothing is
+	 * created on replay if the test case exists by then.
+	 *
+	 * @see TLTestSuite#createTestCase(String, String, TLTestStep)
+	 */
+	public void createTestCase(String project, List<String> suitePath, String testcase, String summary,
+			TLTestStep result) {
+		journalSteps(CREATE_TEST_CASE, project, suitePath, testcase, summary, result);
+	}
+
+	/**
+	 * Journals the update of a test case
+	 *
+	 * @see TLTestCase#update(String, TLTestStep)
+	 */
+	public void update(TLTestCase testcase, String summary, TLTestStep result) {
+		update(testcase.project.getName(), suitePath(testcase.getParent()), testcase.getName(), summary, result);
+	}
+
+	/**
+	 * Journals the update of a test case identified by names. Like
+	 * {@link TLTestCase#update(String, TLTestStep)}, only successful results
+	 * update test cases.
+	 */
+	public void update(String project, List<String> suitePath, String testcase, String summary, TLTestStep result) {
+		if(result.getResult() != ResultCode.SUCCESS) {
+			log.debug("Test case '" + testcase + "' not successful. Not journaling update");
+			return;
+		}
+		journalSteps(UPDATE_TEST_CASE, project, suitePath, testcase, summary, result);
+	}
+
+	private void journalSteps(byte type, String project, List<String> suitePath, String testcase, String summary,
+			TLTestStep result) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = header(bytes, type, project, suitePath, testcase);
+			writeSteps(out, summary, result);
+			append(bytes.toByteArray());
+		} catch(IOException e) {
+			throw new TestLinkException("Failed to journal test case '" + testcase + "'", e);
+		}
+	}
+
+	private static List<String> suitePath(TLTestSuite suite) {
+		List<String> path = new ArrayList<>();
+		for(Optional<TLTestSuite> s = Optional.of(suite); s.isPresent(); s = s.get().getParent()) {
+			path.add(s.get().getName());
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * Stops replaying and closes the file. Pending operations are replayed once
+	 * the journal is opened again.
+	 */
+	@Override
+	public void close() {
+		synchronized(lock) {
+			if(closed) return;
+			closed = true;
+			lock.notifyAll();
+		}
+		drainer.interrupt();
+		try {
+			drainer.join();
+			buffer.force();
+			channel.close();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(IOException e) {
+			throw new TestLinkException("Failed to close journal " + file, e);
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package eu.qedv.tools.ootl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Adaptive limit of concurrent API calls to testlink.
+ * <p>
+ * The limit follows the latency of the calls (additive increase,
+ * multiplicative decrease): while calls are about as fast as the fastest
+ * recently observed call of the same API method and the limit is used, it
+ * grows by one per round trip. When calls become much slower or fail to reach
+ * testlink, it shrinks by a constant factor, at most once per round trip: calls
+ * started before the last decrease were sent at the old limit and do not shrink
+ * it again. Calls beyond the limit wait for a running call to finish.
+ * Errors reported by testlink itself (like unknown names) do not change the
+ * limit.
+ * <p>
+ * All API calls of a {@link TestLink} instance and its handles pass through its
+ * limiter, so bulk operations run at the rate the server sustains.
+ *
+ * @author dimasinger
+ *
+ */
+public final class TLLimiter {
+
+	private static final Log log = LogFactory.getLog(TLLimiter.class);
+
+	// calls slower than this factor times the fastest call mean overload
+	private static final double LATENCY_TOLERANCE = 2.0;
+	private static final double BACKOFF = 0.9;
+	// the fastest call is forgotten slowly, the server may have become slower
+	private static final long MIN_LATENCY_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+	private final int minLimit;
+	private final int maxLimit;
+
+	// guards all fields below, signalled when a call finishes
+	private final Object lock = new Object();
+	private double limit;
+	private int inFlight = 0;
+	private int waiting = 0;
+	// the fastest recent call per API method, methods differ widely in cost
+	private final Map<String, Latency> minLatencies = new HashMap<>();
+	private long lastDecrease = System.nanoTime();
+
+	/**
+	 * Creates a limiter starting at 4 concurrent calls, adapting between 1 and
+	 * 64
+	 */
+	public TLLimiter() {
+		this(4, 1, 64);
+	}
+
+	/**
+	 * Creates a limiter adapting between the given bounds. Equal bounds give a
+	 * fixed limit.
+	 */
+	public TLLimiter(int initialLimit, int minLimit, int maxLimit) {
+		if(minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("Invalid limits: " + minLimit + " <= " + initialLimit + " <= "
+					+ maxLimit);
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = initialLimit;
+	}
+
+	/**
+	 * Waits until a call may start
+	 *
+	 * @return the start time of the call to pass to {@link #release}
+	 */
+	long acquire() {
+		synchronized(lock) {
+			if(inFlight >= (int) limit) {
+				++waiting;
+				try {
+					while(inFlight >= (int) limit) {
+						lock.wait();
+					}
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for a testlink call", e);
+				} finally {
+					--waiting;
+				}
+			}
+			++inFlight;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Finishes a call and adapts the limit
+	 *
+	 * @param method
+	 *            the name of the API method called
+	 * @param start
+	 *            the time returned by {@link #acquire()}
+	 * @param dropped
+	 *            whether the call failed to reach testlink
+	 */
+	void release(String method, long start, boolean dropped) {
+		long now = System.nanoTime();
+		long latency = now - start;
+		synchronized(lock) {
+			int used = inFlight--;
+			if(dropped) {
+				decrease(start, now);
+			} else {
+				Latency min = minLatencies.computeIfAbsent(method, m -> new Latency());
+				if(latency < min.latency || now - min.since > MIN_LATENCY_WINDOW_NANOS) {
+					min.latency = latency;
+					min.since = now;
+				}
+				if(latency > LATENCY_TOLERANCE * min.latency) {
+					decrease(start, now);
+				} else if(used * 2 >= (int) limit) {
+					// one more call per round trip, but only if the limit is actually used
+					limit = Math.min(maxLimit, limit + 1.0 / limit);
+				}
+			}
+			lock.notifyAll();
+		}
+	}
+
+	private void decrease(long start, long now) {
+		if(start - lastDecrease < 0) {
+			// sent before the last decrease, the overload was already answered
+			return;
+		}
+		lastDecrease = now;
+		double decreased = Math.max(minLimit, limit * BACKOFF);
+		if((int) decreased < (int) limit) {
+			log.debug("Reducing concurrent testlink calls to " + (int) decreased);
+		}
+		limit = decreased;
+	}
+
+	private static final class Latency {
+		long latency = Long.MAX_VALUE;
+		long since = 0;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	/**
+	 * @return the lowest number of concurrent calls the limit adapts to
+	 */
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	/**
+	 * @return the highest number of concurrent calls the limit adapts to
+	 */
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	/**
+	 * @return the current number of calls allowed to run concurrently
+	 */
+	public int getLimit() {
+		synchronized(lock) {
+			return (int) limit;
+		}
+	}
+
+	/**
+	 * @return the number of calls currently running
+	 */
+	public int getInFlight() {
+		synchronized(lock) {
+			return inFlight;
+		}
+	}
+
+	/**
+	 * @return the number of calls waiting for the limit
+	 */
+	public int getQueueDepth() {
+		synchronized(lock) {
+			return waiting;
+		}
+	}
+
+	@Override
+	public String toString() {
+		synchronized(lock) {
+			return getClass().getSimpleName() + " [limit=" + (int) limit + ", inFlight=" + inFlight + ", waiting="
+					+ waiting + "]";
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package eu.qedv.tools.ootl;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+/**
+ * Fork/join task caching the child test suites of a test suite and,
+ * recursively, of its descendants up to a maximum depth.<br>
+ * The parallelism of the pool bounds the number of requests in flight, the
+ * limiter of the connection may bound it further.
+ * 
+ * @author dimasinger
+ *
+ */
+class TLPrefetchTask extends RecursiveTask<Integer> {
+
+	private static final long serialVersionUID = 3870519470716251829L;
+
+	private final transient TLTestSuite suite;
+	private final int remainingDepth;
+
+	TLPrefetchTask(TLTestSuite suite, int remainingDepth) {
+		this.suite = suite;
+		this.remainingDepth = remainingDepth;
+	}
+
+	@Override
+	protected Integer compute() {
+		if(remainingDepth <= 0) return 1;
+
+		List<TLTestSuite> children = suite.getTestSuites();
+		List<TLPrefetchTask> subtasks = children.stream().map(c -> new TLPrefetchTask(c, remainingDepth - 1))
+				.collect(Collectors.toList());
+		int visited = 1;
+		for(TLPrefetchTask task : invokeAll(subtasks)) {
+			visited += task.join();
+		}
+		return visited;
+	}
+}
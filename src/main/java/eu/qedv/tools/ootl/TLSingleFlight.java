@@ -0,0 +1,59 @@
+package eu.qedv.tools.ootl;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller loads the value,
+ * callers arriving while it loads wait for and share its result or exception.
+ * Nothing is kept once the load finished, caching is left to the owner.
+ *
+ * @author dimasinger
+ *
+ */
+class TLSingleFlight<K, V> {
+
+	private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+	V load(K key, Function<? super K, ? extends V> loader) {
+		CompletableFuture<V> flight = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+		if(existing != null) {
+			return await(existing);
+		}
+		try {
+			V value = loader.apply(key);
+			flight.complete(value);
+			return value;
+		} catch(RuntimeException | Error e) {
+			flight.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, flight);
+		}
+	}
+
+	/**
+	 * Lets callers arriving from now on start a new load instead of joining the
+	 * one in flight, which may have read the value before a write. Callers
+	 * already waiting still get the result of that load.
+	 */
+	void forget(K key) {
+		inFlight.remove(key);
+	}
+
+	private static <V> V await(CompletableFuture<V> flight) {
+		try {
+			return flight.join();
+		} catch(CompletionException e) {
+			// rethrow what the loading thread threw
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if(cause instanceof Error) throw (Error) cause;
+			throw e;
+		}
+	}
+}
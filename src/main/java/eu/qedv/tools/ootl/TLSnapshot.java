@@ -0,0 +1,201 @@
+package eu.qedv.tools.ootl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import br.eti.kinoshita.testlinkjavaapi.constants.ActionOnDuplicate;
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionType;
+import br.eti.kinoshita.testlinkjavaapi.model.TestCase;
+import br.eti.kinoshita.testlinkjavaapi.model.TestCaseStep;
+import br.eti.kinoshita.testlinkjavaapi.model.TestSuite;
+
+/**
+ * Binary encoding of the cached test suite hierarchy of a TLTestProject.<br>
+ * Only cached content is written, so a snapshot never triggers API calls.
+ * Child lists that were not cached are stored as absent and are loaded on
+ * demand after restoring.
+ * 
+ * @author dimasinger
+ *
+ */
+final class TLSnapshot {
+
+	private static final int MAGIC = 0x544C5350; // "TLSP"
+	private static final int FORMAT_VERSION = 2;
+	private static final int MAX_STRING_LENGTH = 1 << 26;
+	private static final int MAX_COUNT = 1 << 24;
+	// lists grow beyond this with the entries actually read
+	private static final int MAX_INITIAL_CAPACITY = 1024;
+
+	private TLSnapshot() {
+	}
+
+	/*
+	 * Writing
+	 */
+
+	static void write(TLTestProject project, List<TLTestSuite> firstLevelSuites, DataOutputStream out)
+			throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(project.getID());
+		writeString(out, project.getName());
+		writeSuites(out, firstLevelSuites);
+	}
+
+	private static void writeSuites(DataOutputStream out, List<TLTestSuite> suites) throws IOException {
+		if(suites == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(suites.size());
+		for(TLTestSuite suite : suites) {
+			out.writeInt(suite.getID());
+			writeString(out, suite.getName());
+			writeString(out, suite.suite.getDetails());
+			writeSuites(out, suite.getCachedTestSuites());
+			writeTestCases(out, suite.getCachedTestCases());
+		}
+	}
+
+	private static void writeTestCases(DataOutputStream out, List<TLTestCase> testcases) throws IOException {
+		if(testcases == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(testcases.size());
+		for(TLTestCase testcase : testcases) {
+			// summary and steps not loaded or evicted are loaded on demand after restoring
+			TestCase tc = testcase.getLoadedDetails();
+			out.writeInt(testcase.getID());
+			writeString(out, testcase.getName());
+			writeInteger(out, testcase.getKnownVersion());
+			writeInteger(out, testcase.getTestSuiteID());
+			writeInteger(out, tc == null ? null : tc.getVersionId());
+			writeString(out, tc == null ? null : tc.getFullExternalId());
+			writeString(out, tc == null ? null : tc.getSummary());
+			List<TestCaseStep> steps = tc == null ? null : tc.getSteps();
+			out.writeInt(steps == null ? -1 : steps.size());
+			if(steps != null) {
+				for(TestCaseStep step : steps) {
+					writeInteger(out, step.getNumber());
+					writeString(out, step.getActions());
+					writeString(out, step.getExpectedResults());
+				}
+			}
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if(s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeInteger(DataOutputStream out, Integer i) throws IOException {
+		out.writeBoolean(i != null);
+		if(i != null) out.writeInt(i);
+	}
+
+	/*
+	 * Reading
+	 */
+
+	/**
+	 * Reads the first level test suites of a snapshot, together with all cached
+	 * content below them
+	 * 
+	 * @return the first level test suites, or null if they were not cached
+	 * @throws IOException
+	 *             if the snapshot is malformed or belongs to another project
+	 */
+	static List<TLTestSuite> read(TLTestProject project, DataInputStream in) throws IOException {
+		if(in.readInt() != MAGIC) throw new IOException("Not a test project snapshot");
+		int version = in.readInt();
+		if(version != FORMAT_VERSION) throw new IOException("Unsupported snapshot format version " + version);
+		int projectID = in.readInt();
+		String projectName = readString(in);
+		if(projectID != project.getID()) {
+			throw new IOException("Snapshot belongs to test project '" + projectName + "' (" + projectID + ")");
+		}
+		return readSuites(project, null, in);
+	}
+
+	private static List<TLTestSuite> readSuites(TLTestProject project, TLTestSuite parent, DataInputStream in)
+			throws IOException {
+		int n = readCount(in);
+		if(n < 0) return null;
+		List<TLTestSuite> suites = new ArrayList<>(Math.min(n, MAX_INITIAL_CAPACITY));
+		for(int i = 0; i < n; ++i) {
+			TestSuite ts = new TestSuite(in.readInt(), project.getID(), readString(in), readString(in), parent == null
+					? null : parent.getID(), -1, false, ActionOnDuplicate.BLOCK);
+			TLTestSuite suite = new TLTestSuite(project.tl, project, parent, ts);
+			List<TLTestSuite> childSuites = readSuites(project, suite, in);
+			List<TLTestCase> childTestcases = readTestCases(project, suite, in);
+			suite.restoreCache(childSuites, childTestcases);
+			suites.add(suite);
+		}
+		return suites;
+	}
+
+	private static List<TLTestCase> readTestCases(TLTestProject project, TLTestSuite parent, DataInputStream in)
+			throws IOException {
+		int n = readCount(in);
+		if(n < 0) return null;
+		List<TLTestCase> testcases = new ArrayList<>(Math.min(n, MAX_INITIAL_CAPACITY));
+		for(int i = 0; i < n; ++i) {
+			TestCase tc = new TestCase();
+			tc.setId(in.readInt());
+			tc.setName(readString(in));
+			tc.setVersion(readInteger(in));
+			tc.setTestSuiteId(readInteger(in));
+			tc.setVersionId(readInteger(in));
+			tc.setFullExternalId(readString(in));
+			tc.setSummary(readString(in));
+			tc.setTestProjectId(project.getID());
+			int stepCount = readCount(in);
+			if(stepCount >= 0) {
+				List<TestCaseStep> steps = new ArrayList<>(Math.min(stepCount, MAX_INITIAL_CAPACITY));
+				for(int s = 0; s < stepCount; ++s) {
+					steps.add(new TestCaseStep(null, tc.getVersionId(), readInteger(in), readString(in), readString(
+							in), true, ExecutionType.AUTOMATED));
+				}
+				tc.setSteps(steps);
+			}
+			testcases.add(new TLTestCase(project.tl, project, parent, tc, stepCount >= 0));
+		}
+		return testcases;
+	}
+
+	/**
+	 * Reads the length of a list, -1 if the list is absent. Lengths beyond the
+	 * end of the stream fail with an {@code EOFException} while reading the
+	 * entries, so no memory is reserved for them up front.
+	 */
+	private static int readCount(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		if(n < -1 || n > MAX_COUNT) throw new IOException("Malformed snapshot: list of length " + n);
+		return n;
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if(length < 0) return null;
+		if(length > MAX_STRING_LENGTH) throw new IOException("Malformed snapshot: string of length " + length);
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static Integer readInteger(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readInt() : null;
+	}
+}
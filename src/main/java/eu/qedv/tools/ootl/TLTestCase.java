@@ -1,7 +1,5 @@
 package eu.qedv.tools.ootl;
 
-import java.util.List;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -10,9 +8,10 @@ import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
 import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionType;
 import br.eti.kinoshita.testlinkjavaapi.constants.TestCaseStatus;
 import br.eti.kinoshita.testlinkjavaapi.constants.TestImportance;
+import br.eti.kinoshita.testlinkjavaapi.model.ReportTCResultResponse;
 import br.eti.kinoshita.testlinkjavaapi.model.TestCase;
-import br.eti.kinoshita.testlinkjavaapi.model.TestCaseStep;
 import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
+import eu.qedv.tools.ootl.exception.TestLinkException;
 import eu.qedv.tools.ootl.structure.ResultCode;
 import eu.qedv.tools.ootl.structure.TLTestStep;
 
@@ -25,33 +24,115 @@ public class TLTestCase {
 	protected final TLTestProject project;
 	protected final TLTestSuite parent;
 
-	protected final TestCase testcase;
 	protected final int testcaseID;
 	protected final String testcaseName;
+	// suite the test case is in, may be a descendant of parent
+	private final Integer testSuiteID;
+
+	// test case including summary and steps, follows the cache policy and is
+	// loaded again once expired or reclaimed
+	private final TLCachedValue<TestCase> details;
+	private final Object detailsLock = new Object();
+
+	// latest version of this test case, null until known
+	private volatile Integer version;
+
+	// fingerprint of the steps of this version, computed on first comparison
+	private volatile Long stepsFingerprint = null;
 
 	protected TLTestCase(TestLink tl, TLTestProject project, TLTestSuite parent, TestCase testcase) {
+        this(tl, project, parent, testcase, true);
+    }
+
+    TLTestCase(TestLink tl, TLTestProject project, TLTestSuite parent, TestCase testcase, boolean complete) {
         this.tl = tl;
         this.project = project;
         this.parent = parent;
-        this.testcase = testcase;
         this.testcaseID = testcase.getId();
         this.testcaseName = testcase.getName();
+        this.testSuiteID = testcase.getTestSuiteId();
+        this.version = testcase.getVersion();
+        this.details = new TLCachedValue<>(tl.config.cachePolicy, "testCaseDetails", tl::getMetrics);
+        if (complete)
+            details.set(testcase);
     }
 
-    private boolean stepsChanged(TLTestStep result) {
-        List<TestCaseStep> steps = testcase.getSteps();
-        List<TestCaseStep> newSteps = result.toSteps(-1);
-        if (newSteps.size() != steps.size())
+    /**
+     * @return the test case including summary and steps, loaded on first use if
+     *         this test case was cached without them or they were evicted
+     */
+    private TestCase details() {
+        TestCase loaded = details.lookup();
+        if (loaded != null)
+            return loaded;
+        synchronized (detailsLock) {
+            loaded = details.get();
+            if (loaded == null) {
+                log.debug("Loading summary and steps of test case '" + testcaseName + "'");
+                try {
+                    loaded = tl.call("getTestCase", api -> api.getTestCase(testcaseID, null, version));
+                } catch (TestLinkAPIException e) {
+                    throw new TestLinkException("Failed to load test case '" + testcaseName + "'", e);
+                }
+                details.set(loaded);
+                version = loaded.getVersion();
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * @return the test case including summary and steps if loaded, null otherwise
+     */
+    TestCase getLoadedDetails() {
+        return details.get();
+    }
+
+    /**
+     * @return the latest version if known, without loading it
+     */
+    Integer getKnownVersion() {
+        return version;
+    }
+
+    Integer getTestSuiteID() {
+        return testSuiteID;
+    }
+
+    /**
+     * Compares this handle with the test case as listed by testlink. Whatever
+     * the listing leaves out is not compared.
+     * 
+     * @return true if the test case was neither renamed, moved nor changed
+     */
+    boolean describes(TestCase testcase) {
+        if (testcaseID != testcase.getId() || !testcaseName.equals(testcase.getName()))
+            return false;
+        if (testcase.getVersion() != null && !testcase.getVersion().equals(version))
+            return false;
+        if (testcase.getTestSuiteId() != null && !testcase.getTestSuiteId().equals(testSuiteID))
+            return false;
+        // summary and steps can be edited without creating a new version
+        TestCase loaded = details.get();
+        if (loaded == null)
             return true;
-        for (int i = 0; i < newSteps.size(); ++i) {
-            TestCaseStep step = steps.get(i);
-            TestCaseStep newStep = newSteps.get(i);
-            if (!step.getActions().equals(newStep.getActions()))
-                return true;
-            if (!step.getExpectedResults().equals(newStep.getExpectedResults()))
-                return true;
+        if (testcase.getSummary() != null && !testcase.getSummary().equals(loaded.getSummary()))
+            return false;
+        return testcase.getSteps() == null || loaded.getSteps() == null || TLTestStep.fingerprint(testcase
+                .getSteps()) == TLTestStep.fingerprint(loaded.getSteps());
+    }
+
+    private long stepsFingerprint() {
+        Long fingerprint = stepsFingerprint;
+        if (fingerprint == null) {
+            fingerprint = TLTestStep.fingerprint(details().getSteps());
+            stepsFingerprint = fingerprint;
         }
-        return false;
+        return fingerprint;
+    }
+
+    private boolean stepsChanged(TLTestStep result) {
+        return result.getFingerprint() != stepsFingerprint();
     }
 
     /*
@@ -67,11 +148,25 @@ public class TLTestCase {
     }
 
     public int getID() {
-        return testcase.getId();
+        return testcaseID;
     }
 
+    /**
+     * @return the latest version of this test case. Test cases cached without
+     *         their version load it once, without keeping summary and steps.
+     */
     public int getVersion() {
-        return testcase.getVersion();
+        Integer known = version;
+        if (known != null)
+            return known;
+        log.debug("Loading version of test case '" + testcaseName + "'");
+        try {
+            known = tl.call("getTestCase", api -> api.getTestCase(testcaseID, null, null)).getVersion();
+        } catch (TestLinkAPIException e) {
+            throw new TestLinkException("Failed to load version of test case '" + testcaseName + "'", e);
+        }
+        version = known;
+        return known;
     }
 
     /*
@@ -85,7 +180,23 @@ public class TLTestCase {
      * @return the updated test case
      */
     public TLTestCase update(String summary, TLTestStep result) {
-        if (summary.equals(testcase.getSummary()) && !stepsChanged(result))
+        try {
+            return updateOrThrow(summary, result);
+        } catch (TestLinkAPIException e) {
+            log.error("Failed to update test case '" + testcaseName + "':", e);
+            return this;
+        }
+    }
+
+    /**
+     * Like {@link #update(String, TLTestStep)}, throwing a failed call instead
+     * of logging it, so it can be told apart from an unchanged test case
+     * 
+     * @throws TestLinkAPIException
+     *             if the new version could not be created
+     */
+    TLTestCase updateOrThrow(String summary, TLTestStep result) {
+        if (summary.equals(details().getSummary()) && !stepsChanged(result))
             return this;
 
         String logCase = "Test case '" + testcaseName + "'";
@@ -100,15 +211,10 @@ public class TLTestCase {
         int version = getVersion() + 1;
         log.info(logCase + " changed. Updating to version " + version);
 
-        try {
-            TestCase tc = tl.api.createTestCase(testcaseName, parent.getID(), project.getID(), tl.username, summary,
-                    result.toSteps(version), "", TestCaseStatus.FINAL, TestImportance.MEDIUM, ExecutionType.AUTOMATED, 0, -1,
-                    true, ActionOnDuplicate.CREATE_NEW_VERSION);
-            return new TLTestCase(tl, project, parent, tc);
-        } catch (TestLinkAPIException e) {
-            log.error("Failed to update test case '" + testcaseName + "':", e);
-        }
-        return this;
+        TestCase tc = tl.call("createTestCase", api -> api.createTestCase(testcaseName, parent.getID(), project
+                .getID(), tl.username, summary, result.toSteps(version), "", TestCaseStatus.FINAL,
+                TestImportance.MEDIUM, ExecutionType.AUTOMATED, 0, -1, true, ActionOnDuplicate.CREATE_NEW_VERSION));
+        return new TLTestCase(tl, project, parent, tc);
     }
 
     /**
@@ -119,6 +225,24 @@ public class TLTestCase {
      * @return true if test case executed successfully, false otherwise
      */
     public boolean execute(TLBuild build, ResultCode result, String notes) {
+        try {
+            return executeOrThrow(build, result, notes);
+        } catch (TestLinkAPIException e) {
+            log.error("Failed to execute test case '" + testcaseName + "':", e);
+            return false;
+        }
+    }
+
+    /**
+     * Like {@link #execute(TLBuild, ResultCode, String)}, throwing a failed call
+     * instead of logging it
+     * 
+     * @return true if the test case was executed, false if execution is
+     *         disabled or the result is NOT_RUN
+     * @throws TestLinkAPIException
+     *             if the test case could not be linked or executed
+     */
+    boolean executeOrThrow(TLBuild build, ResultCode result, String notes) {
         if (!tl.config.executeTestCase) {
             log.warn("Execution disabled. Not executing test case '" + testcaseName + "'");
             return false;
@@ -131,22 +255,20 @@ public class TLTestCase {
             return false;
         }
 
-        int v = build.addTestcaseToTestPlan(this);
-        if (v == -1)
-            return false;
+        int v = build.linkTestCase(this);
         String finalNotes = notes;
-        if (v > 0 && v != getVersion()) {
-            log.debug("Executing version " + v + ", adding comment with version " + getVersion() + " to execution notes");
-            finalNotes += "\n\nActual executed version: " + getVersion() + "\nGo to Test Specification to see changes";
+        // an already linked test case is not loaded just to compare versions
+        Integer latest = version;
+        if (v > 0 && latest != null && v != latest) {
+            log.debug("Executing version " + v + ", adding comment with version " + latest + " to execution notes");
+            finalNotes += "\n\nActual executed version: " + latest + "\nGo to Test Specification to see changes";
         }
 
-        try {
-            tl.api.setTestCaseExecutionResult(testcaseID, -1, build.planID, status, build.buildID, "", finalNotes.trim(), false, "", -1,
-                    "", null, true);
-            return true;
-        } catch (TestLinkAPIException e) {
-            log.error("Failed to execute test case '" + testcaseName + "':", e);
-            return false;
-        }
+        String trimmedNotes = finalNotes.trim();
+        ReportTCResultResponse response = tl.call("setTestCaseExecutionResult", api -> api.setTestCaseExecutionResult(
+                testcaseID, -1, build.planID, status, build.buildID, "", trimmedNotes, false, "", -1, "", null, true));
+        build.executed(this, status, response == null ? null : response.getExecutionId(), v > 0 ? v : getVersion(),
+                trimmedNotes);
+        return true;
     }
 }
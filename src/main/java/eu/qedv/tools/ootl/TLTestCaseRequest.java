@@ -0,0 +1,58 @@
+package eu.qedv.tools.ootl;
+
+import eu.qedv.tools.ootl.structure.TLTestStep;
+
+/**
+ * A pending creation of a TLTestCase, as passed to
+ * {@link TLTestProject#createTestCases(java.util.Collection, int)}
+ * 
+ * @author dimasinger
+ *
+ */
+public class TLTestCaseRequest {
+
+	protected final String testSuitePath;
+	protected final String testCaseName;
+	protected final String summary;
+	protected final TLTestStep result;
+
+	/**
+	 * Creates a test case creation request
+	 * 
+	 * @param testSuitePath
+	 *            the path of the test suite to create the test case in, missing
+	 *            test suites are created
+	 * @param testCaseName
+	 *            the name of the test case
+	 * @param summary
+	 *            the summary of the test case
+	 * @param result
+	 *            A {@code TLTestStep} describing the steps of the test case
+	 */
+	public TLTestCaseRequest(String testSuitePath, String testCaseName, String summary, TLTestStep result) {
+		this.testSuitePath = testSuitePath;
+		this.testCaseName = testCaseName;
+		this.summary = summary;
+		this.result = result;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	public String getTestSuitePath() {
+		return testSuitePath;
+	}
+
+	public String getTestCaseName() {
+		return testCaseName;
+	}
+
+	public String getSummary() {
+		return summary;
+	}
+
+	public TLTestStep getResult() {
+		return result;
+	}
+}
@@ -0,0 +1,147 @@
+package eu.qedv.tools.ootl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import br.eti.kinoshita.testlinkjavaapi.model.Build;
+import br.eti.kinoshita.testlinkjavaapi.model.TestPlan;
+import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
+import eu.qedv.tools.ootl.exception.FailedCreationException;
+import eu.qedv.tools.ootl.exception.MissingPermissionException;
+import eu.qedv.tools.ootl.exception.TestLinkException;
+
+/**
+ * Per test plan state shared by all TLBuilds of the plan: the builds of the
+ * plan and the test cases linked to it
+ * 
+ * @author dimasinger
+ *
+ */
+class TLTestPlan {
+
+	private static final Log log = LogFactory.getLog(TLTestPlan.class);
+
+	protected final TestLink tl;
+
+	protected final TLTestProject project;
+
+	protected final int planID;
+	protected final String planName;
+
+	// builds of this test plan in testlink's order, null until cached
+	private final TLCachedValue<TLChildren<TLBuild>> cachedBuilds;
+	private final Object buildsLock = new Object();
+	// every build handle by id, guarded by buildsLock. Reloading the builds
+	// reuses the handles, so there is only one execution cache per build.
+	private final Map<Integer, TLBuild> handles = new HashMap<>();
+
+	// test case id -> version linked to this test plan
+	private final TLCache<Integer, Integer> linkedVersions;
+
+	TLTestPlan(TestLink tl, TLTestProject project, TestPlan plan) {
+		this.tl = tl;
+		this.project = project;
+		this.planID = plan.getId();
+		this.planName = plan.getName();
+		this.cachedBuilds = new TLCachedValue<>(tl.config.cachePolicy, "builds", tl::getMetrics);
+		this.linkedVersions = new TLCache<>(tl.config.cachePolicy, "linkedVersions", tl::getMetrics);
+	}
+
+	private TLChildren<TLBuild> cacheBuilds() {
+		TLChildren<TLBuild> cached = cachedBuilds.lookup();
+		if(cached != null) return cached;
+		synchronized(buildsLock) {
+			cached = cachedBuilds.get();
+			if(cached != null) return cached;
+			log.debug("Caching builds of test plan " + planName);
+			try {
+				Build[] builds = tl.call("getBuildsForTestPlan", api -> api.getBuildsForTestPlan(planID));
+				cached = new TLChildren<>(Arrays.stream(builds).map(this::handle).collect(Collectors.toList()),
+						TLBuild::getBuildName);
+				cachedBuilds.set(cached);
+				return cached;
+			} catch(TestLinkAPIException e) {
+				throw new TestLinkException("Failed to cache builds of test plan " + planName, e);
+			}
+		}
+	}
+
+	// must hold buildsLock
+	private TLBuild handle(Build build) {
+		TLBuild existing = handles.get(build.getId());
+		if(existing != null && existing.getBuildName().equals(build.getName())) return existing;
+		TLBuild created = new TLBuild(tl, project, this, build);
+		handles.put(build.getId(), created);
+		return created;
+	}
+
+	/*
+	 * Builds
+	 */
+
+	/**
+	 * @return the builds of this test plan in testlink's order
+	 */
+	List<TLBuild> getBuilds() {
+		return cacheBuilds().asList();
+	}
+
+	Optional<TLBuild> getBuild(String buildName) {
+		return cacheBuilds().get(buildName);
+	}
+
+	TLBuild createBuild(String buildName) {
+		String key = planName + ":" + buildName;
+		if(!tl.config.createBuild) {
+			throw new MissingPermissionException("Creating builds not permitted");
+		}
+		synchronized(buildsLock) {
+			// cached before creating, so the new build is registered instead of loaded as a second handle
+			TLChildren<TLBuild> cached = cacheBuilds();
+			log.debug("Creating build " + key);
+			TLBuild build;
+			try {
+				build = handle(tl.call("createBuild", api -> api.createBuild(planID, buildName, buildName)));
+			} catch(TestLinkAPIException e) {
+				throw new FailedCreationException("Failed to create build " + key, e);
+			}
+			Optional<TLBuild> existing = cached.get(buildName);
+			if(existing.isPresent()) return existing.get();
+			cached.add(build);
+			return build;
+		}
+	}
+
+	TLBuild getOrCreateBuild(String buildName) {
+		Optional<TLBuild> build = cacheBuilds().get(buildName);
+		if(build.isPresent()) return build.get();
+		// serializes creation of builds within this plan only
+		synchronized(buildsLock) {
+			build = cacheBuilds().get(buildName);
+			return build.isPresent() ? build.get() : createBuild(buildName);
+		}
+	}
+
+	/*
+	 * Linked test cases
+	 */
+
+	/**
+	 * @return the version of the test case linked to this test plan, null if not
+	 *         known to be linked
+	 */
+	Integer getLinkedVersion(int testcaseID) {
+		return linkedVersions.get(testcaseID);
+	}
+
+	void linked(int testcaseID, int version) {
+		linkedVersions.put(testcaseID, version);
+	}
+}
@@ -1,17 +1,37 @@
 package eu.qedv.tools.ootl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import br.eti.kinoshita.testlinkjavaapi.model.Build;
+import br.eti.kinoshita.testlinkjavaapi.constants.ActionOnDuplicate;
 import br.eti.kinoshita.testlinkjavaapi.model.TestPlan;
 import br.eti.kinoshita.testlinkjavaapi.model.TestProject;
 import br.eti.kinoshita.testlinkjavaapi.model.TestSuite;
@@ -35,15 +55,33 @@ public class TLTestProject {
 	protected final int projectID;
 	protected final String projectName;
 
-	// cached first level test suites and builds
-	private List<TLTestSuite> cachedFirstLevelTestSuites = null;
-	private Map<List<String>, Optional<TLTestSuite>> cachedTestSuitePaths = new HashMap<>();
-	private Map<String, Optional<TLBuild>> cachedBuilds = new HashMap<>();
+	// cached first level test suites and test plans
+	private final TLCachedValue<TLChildren<TLTestSuite>> cachedFirstLevelTestSuites;
+	private final Object firstLevelTestSuitesLock = new Object();
+	// every first level test suite by id, guarded by firstLevelTestSuitesLock.
+	// Reloading reuses the handles, so resolved paths stay valid once expired.
+	private final Map<Integer, TLTestSuite> firstLevelHandles = new HashMap<>();
+	// serializes creating test suite paths, so no suite is created twice
+	private final Object testSuiteCreationLock = new Object();
+	// replaced as a whole once revalidation changed the content, so lookups
+	// still resolving against the old content can not fill the new cache
+	private volatile TLCache<List<String>, Optional<TLTestSuite>> cachedTestSuitePaths;
+	private final TLCache<String, Optional<TLTestPlan>> cachedTestPlans;
+	// every test plan by id, reused when reloading so builds keep their handles
+	private final Map<Integer, TLTestPlan> testPlanHandles = new ConcurrentHashMap<>();
 
 	protected TLTestProject(TestLink tl, TestProject project) {
 		this.tl = tl;
 		this.projectID = project.getId();
 		this.projectName = project.getName();
+		this.cachedFirstLevelTestSuites = new TLCachedValue<>(tl.config.cachePolicy, "firstLevelTestSuites",
+				tl::getMetrics);
+		this.cachedTestSuitePaths = newTestSuitePathCache();
+		this.cachedTestPlans = new TLCache<>(tl.config.cachePolicy, "testPlans", tl::getMetrics);
+	}
+
+	private TLCache<List<String>, Optional<TLTestSuite>> newTestSuitePathCache() {
+		return new TLCache<>(tl.config.cachePolicy, "testSuitePaths", tl::getMetrics);
 	}
 
 	private Optional<TLTestSuite> resolveTestSuiteByPath(List<String> testSuitePath) {
@@ -62,6 +100,93 @@ public class TLTestProject {
 		return current;
 	}
 
+	private static List<String> splitPath(String testSuitePath) {
+		return Arrays.asList(testSuitePath.split("[/\\\\]"));
+	}
+
+	private Optional<TLTestPlan> loadTestPlan(String testPlanName) {
+		log.debug("Caching test plan " + testPlanName);
+		try {
+			TestPlan plan = tl.call("getTestPlanByName", api -> api.getTestPlanByName(testPlanName, projectName));
+			return Optional.ofNullable(plan).map(p -> testPlanHandles.compute(p.getId(), (id, existing) ->
+					existing != null && existing.planName.equals(p.getName()) ? existing : new TLTestPlan(tl, this, p)));
+		} catch(TestLinkAPIException e) {
+			// only an answer of testlink is cached as a missing test plan
+			if(TestLink.isTransportError(e)) throw e;
+			log.debug("No such test plan: " + testPlanName, e);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Retrieves the registry entry of a test plan, holding the builds of the plan
+	 */
+	Optional<TLTestPlan> getTestPlan(String testPlanName) {
+		return cachedTestPlans.get(testPlanName, this::loadTestPlan);
+	}
+
+	private TLTestPlan requireTestPlan(String testPlanName, String buildName) {
+		return getTestPlan(testPlanName).orElseThrow(() -> new FailedCreationException("Failed to create build "
+				+ testPlanName + ":" + buildName + " (no such test plan)"));
+	}
+
+	// must hold firstLevelTestSuitesLock
+	private TLChildren<TLTestSuite> toFirstLevelTestSuites(TestSuite[] suites) {
+		return new TLChildren<>(Arrays.stream(suites).map(this::handle).collect(Collectors.toList()),
+				TLTestSuite::getName);
+	}
+
+	// must hold firstLevelTestSuitesLock
+	private TLTestSuite handle(TestSuite suite) {
+		TLTestSuite existing = firstLevelHandles.get(suite.getId());
+		if(existing != null && existing.describes(suite)) return existing;
+		TLTestSuite created = new TLTestSuite(tl, this, null, suite);
+		firstLevelHandles.put(suite.getId(), created);
+		return created;
+	}
+
+	private TLChildren<TLTestSuite> cacheFirstLevelTestSuites() {
+		TLChildren<TLTestSuite> suites = cachedFirstLevelTestSuites.lookup();
+		if(suites == null) {
+			synchronized(firstLevelTestSuitesLock) {
+				suites = cachedFirstLevelTestSuites.get();
+				if(suites == null) {
+					log.debug("Caching first level test suites for project " + projectName);
+					suites = toFirstLevelTestSuites(tl.call("getFirstLevelTestSuitesForTestProject", api -> api
+							.getFirstLevelTestSuitesForTestProject(projectID)));
+					cachedFirstLevelTestSuites.set(suites);
+				}
+			}
+		}
+		return suites;
+	}
+
+	private void revalidateCache() {
+		log.debug("Revalidating cached test suites of project " + projectName);
+		boolean changed = false;
+		TLChildren<TLTestSuite> suites = cachedFirstLevelTestSuites.get();
+		if(suites != null) {
+			TestSuite[] current = tl.call("getFirstLevelTestSuitesForTestProject", api -> api
+					.getFirstLevelTestSuitesForTestProject(projectID));
+			if(TLTestSuite.sameTestSuites(suites.asList(), current)) {
+				for(TLTestSuite suite : suites.asList()) {
+					changed |= suite.revalidate();
+				}
+			} else {
+				synchronized(firstLevelTestSuitesLock) {
+					if(cachedFirstLevelTestSuites.get() == suites) {
+						cachedFirstLevelTestSuites.set(toFirstLevelTestSuites(current));
+					}
+				}
+				changed = true;
+			}
+		}
+		if(changed) {
+			log.debug("Cached test suites of project " + projectName + " changed, dropping resolved paths");
+			cachedTestSuitePaths = newTestSuitePathCache();
+		}
+	}
+
 	/*
 	 * Getters
 	 */
@@ -92,18 +217,42 @@ public class TLTestProject {
 	 *             if the build could not be created
 	 */
 	public TLBuild createBuild(String testPlanName, String buildName) {
-		String key = testPlanName + ":" + buildName;
 		if(tl.config.createBuild) {
-			log.debug("Creating build " + key);
-			try {
-				TestPlan plan = tl.api.getTestPlanByName(testPlanName, projectName);
-				return new TLBuild(tl, this, plan, tl.api.createBuild(plan.getId(), buildName, buildName));
-			} catch(TestLinkAPIException e) {
-				throw new FailedCreationException("Failed to create build " + key, e);
-			}
+			return requireTestPlan(testPlanName, buildName).createBuild(buildName);
 		} else throw new MissingPermissionException("Creating builds not permitted");
 	}
 
+	/**
+	 * Retrieves a build of this test project by name, creating it if it does not
+	 * exist. Concurrent calls for the same build create it only once.
+	 * 
+	 * @param testPlanName
+	 *            the name of the test plan the build is in
+	 * @param buildName
+	 *            the name of the build
+	 * @return the existing or created build
+	 * @throws MissingPermissionException
+	 *             if the build does not exist and creating builds is not
+	 *             permitted
+	 * @throws TestLinkException
+	 *             if the build could not be created
+	 */
+	public TLBuild getOrCreateBuild(String testPlanName, String buildName) {
+		return requireTestPlan(testPlanName, buildName).getOrCreateBuild(buildName);
+	}
+
+	/**
+	 * Retrieves all builds of a test plan in this test project.
+	 * 
+	 * @param testPlanName
+	 *            the name of the test plan
+	 * @return the builds of the test plan, empty if the plan does not exist
+	 */
+	public List<TLBuild> getBuilds(String testPlanName) {
+		return getTestPlan(testPlanName).map(p -> (List<TLBuild>) new ArrayList<>(p.getBuilds())).orElse(
+				Collections.emptyList());
+	}
+
 	/**
 	 * Retrieves a build of this test project by name.
 	 * 
@@ -114,16 +263,7 @@ public class TLTestProject {
 	 * @return An {@code Optional} containing the build if it exists
 	 */
 	public Optional<TLBuild> getBuild(String testPlanName, String buildName) {
-		String key = testPlanName + ":" + buildName;
-		if(cachedBuilds.containsKey(key)) return cachedBuilds.get(key);
-
-		log.debug("Caching build " + key);
-		TestPlan plan = tl.api.getTestPlanByName(testPlanName, projectName);
-		Build[] builds = tl.api.getBuildsForTestPlan(plan.getId());
-		Optional<TLBuild> build = Arrays.stream(builds).filter(b -> b.getName().equals(buildName)).findAny()
-				.map(b -> new TLBuild(tl, this, plan, b));
-		cachedBuilds.put(key, build);
-		return build;
+		return getTestPlan(testPlanName).flatMap(p -> p.getBuild(buildName));
 	}
 
 	/**
@@ -132,13 +272,7 @@ public class TLTestProject {
 	 * @return an unmodifiable {@code List} containing the first level test suites
 	 */
 	public List<TLTestSuite> getFirstLevelTestSuites() {
-		if(cachedFirstLevelTestSuites == null) {
-			log.debug("Caching first level test suites for project " + projectName);
-			cachedFirstLevelTestSuites = new ArrayList<>();
-			TestSuite[] suites = tl.api.getFirstLevelTestSuitesForTestProject(projectID);
-			Arrays.stream(suites).map(s -> new TLTestSuite(tl, this, null, s)).forEach(cachedFirstLevelTestSuites::add);
-		}
-		return Collections.unmodifiableList(cachedFirstLevelTestSuites);
+		return cacheFirstLevelTestSuites().asList();
 	}
 
 	/**
@@ -149,7 +283,7 @@ public class TLTestProject {
 	 * @return An {@code Optional} containing the suite if it exists
 	 */
 	public Optional<TLTestSuite> getFirstLevelTestSuite(String testSuiteName) {
-		return getFirstLevelTestSuites().stream().filter(s -> s.getName().equals(testSuiteName)).findAny();
+		return cacheFirstLevelTestSuites().get(testSuiteName);
 	}
 
 	/**
@@ -164,7 +298,7 @@ public class TLTestProject {
 	 * @return An {@code Optional} containing the suite if the path exists
 	 */
 	public Optional<TLTestSuite> getTestSuiteByPath(List<String> testSuitePath) {
-		return cachedTestSuitePaths.computeIfAbsent(testSuitePath, this::resolveTestSuiteByPath);
+		return cachedTestSuitePaths.get(testSuitePath, this::resolveTestSuiteByPath);
 	}
 
 	/**
@@ -179,7 +313,330 @@ public class TLTestProject {
 	 * @return An {@code Optional} containing the suite if the path exists
 	 */
 	public Optional<TLTestSuite> getTestSuiteByPath(String testSuitePath) {
-		return getTestSuiteByPath(Arrays.asList(testSuitePath.split("[/\\\\]")));
+		return getTestSuiteByPath(splitPath(testSuitePath));
+	}
+
+	/**
+	 * Creates a new first level test suite in this test project
+	 * 
+	 * @param testSuiteName
+	 *            the name of the new test suite
+	 * @return the newly created test suite
+	 * @throws MissingPermissionException
+	 *             if missing the permission to create test suites
+	 * @throws FailedCreationException
+	 *             if test suite could not be created
+	 */
+	public TLTestSuite createFirstLevelTestSuite(String testSuiteName) {
+		String key = projectName + ":" + testSuiteName;
+		if(!tl.config.createTestSuite) {
+			throw new MissingPermissionException("Creating test suites not permitted");
+		}
+
+		// cached before creating, otherwise the new test suite would be loaded and added
+		TLChildren<TLTestSuite> suites = cacheFirstLevelTestSuites();
+		log.debug("Creating test suite " + key);
+		TestSuite suite;
+		try {
+			suite = tl.call("createTestSuite", api -> api.createTestSuite(projectID, testSuiteName, "", null, 0,
+					true, ActionOnDuplicate.BLOCK));
+		} catch(TestLinkAPIException e) {
+			throw new FailedCreationException("Failed to create test suite " + key, e);
+		}
+		log.debug("Created test suite " + key);
+
+		synchronized(firstLevelTestSuitesLock) {
+			Optional<TLTestSuite> existing = suites.get(testSuiteName);
+			if(existing.isPresent()) return existing.get();
+			TLTestSuite ts = handle(suite);
+			ts.markCreated();
+			suites.add(ts);
+			return ts;
+		}
+	}
+
+	/**
+	 * Retrieves a test suite specified by its path through the test suite
+	 * hierarchy, creating every missing test suite along the path like
+	 * {@code mkdir -p}.
+	 * 
+	 * @param testSuitePath
+	 *            the path to the test suite, split like for
+	 *            {@link #getTestSuiteByPath(List)}
+	 * @return the existing or created test suite
+	 * @throws MissingPermissionException
+	 *             if a test suite is missing and creating test suites is not
+	 *             permitted
+	 * @throws TestLinkException
+	 *             if a test suite could not be created
+	 */
+	public TLTestSuite getOrCreateTestSuiteByPath(List<String> testSuitePath) {
+		Optional<TLTestSuite> existing = getTestSuiteByPath(testSuitePath);
+		if(existing.isPresent()) return existing.get();
+		if(testSuitePath.isEmpty()) {
+			throw new FailedCreationException("Failed to create test suite (path empty)");
+		}
+		synchronized(testSuiteCreationLock) {
+			TLTestSuite current = null;
+			for(int i = 0; i < testSuitePath.size(); ++i) {
+				String name = testSuitePath.get(i);
+				Optional<TLTestSuite> child = current == null ? getFirstLevelTestSuite(name) : current.getTestSuite(
+						name);
+				if(child.isPresent()) {
+					current = child.get();
+				} else {
+					current = current == null ? createFirstLevelTestSuite(name) : current.createTestSuite(name);
+					// replaces the path not found before
+					cachedTestSuitePaths.put(new ArrayList<>(testSuitePath.subList(0, i + 1)), Optional.of(current));
+				}
+			}
+			return current;
+		}
 	}
 
+	/**
+	 * Retrieves a test suite specified by its path through the test suite
+	 * hierarchy, creating every missing test suite along the path.
+	 * 
+	 * @param testSuitePath
+	 *            the path to the test suite, separated like for
+	 *            {@link #getTestSuiteByPath(String)}
+	 * @return the existing or created test suite
+	 * @see #getOrCreateTestSuiteByPath(List)
+	 */
+	public TLTestSuite getOrCreateTestSuiteByPath(String testSuitePath) {
+		return getOrCreateTestSuiteByPath(splitPath(testSuitePath));
+	}
+
+	/**
+	 * Creates many test cases in this test project, running up to
+	 * {@code parallelism} creations at the same time.
+	 * 
+	 * @param requests
+	 *            the test cases to create along with their test suite paths
+	 * @param parallelism
+	 *            the maximum number of concurrent creations
+	 * @return a report holding the created test case or error of every request
+	 * @see #createTestCases(Collection, ExecutorService)
+	 */
+	public TLCreationReport createTestCases(Collection<TLTestCaseRequest> requests, int parallelism) {
+		ExecutorService executor = TLBuild.newWorkerPool(parallelism, requests.size(), "create");
+		try {
+			return createTestCases(requests, executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Creates many test cases in this test project using the given executor. The
+	 * executor is not shut down.<br>
+	 * Missing test suites are created first, once per path, then the test cases
+	 * are created concurrently. Created test suites and test cases are added to
+	 * the cache, so they are found without asking testlink again. If a test suite
+	 * path could not be created, all requests in it fail with the same error.
+	 * 
+	 * @param requests
+	 *            the test cases to create along with their test suite paths
+	 * @param executor
+	 *            the executor running the creations
+	 * @return a report holding the created test case or error of every request
+	 */
+	public TLCreationReport createTestCases(Collection<TLTestCaseRequest> requests, ExecutorService executor) {
+		List<TLTestCaseRequest> pending = new ArrayList<>(requests);
+		log.debug("Creating " + pending.size() + " test cases in project " + projectName);
+
+		Map<String, TLTestSuite> suites = new LinkedHashMap<>();
+		Map<String, RuntimeException> suiteErrors = new LinkedHashMap<>();
+		for(TLTestCaseRequest request : pending) {
+			String path = request.testSuitePath;
+			if(suites.containsKey(path) || suiteErrors.containsKey(path)) continue;
+			try {
+				TLTestSuite suite = getOrCreateTestSuiteByPath(path);
+				// caches the test cases of existing suites once, not in every creation
+				suite.getTestCases();
+				suites.put(path, suite);
+			} catch(RuntimeException e) {
+				log.error("Failed to create test suite path '" + path + "':", e);
+				suiteErrors.put(path, e);
+			}
+		}
+
+		List<Future<TLTestCase>> futures = new ArrayList<>(pending.size());
+		for(TLTestCaseRequest request : pending) {
+			TLTestSuite suite = suites.get(request.testSuitePath);
+			futures.add(suite == null ? null : executor.submit(() -> suite.createTestCase(request.testCaseName,
+					request.summary, request.result)));
+		}
+
+		TLCreationReport report = new TLCreationReport();
+		for(int i = 0; i < pending.size(); ++i) {
+			TLTestCaseRequest request = pending.get(i);
+			if(futures.get(i) == null) {
+				report.failed(request, suiteErrors.get(request.testSuitePath));
+				continue;
+			}
+			try {
+				report.created(request, futures.get(i).get());
+			} catch(ExecutionException e) {
+				log.error("Failed to create test case '" + request.testCaseName + "':", e.getCause());
+				report.failed(request, e.getCause());
+			} catch(InterruptedException e) {
+				futures.forEach(f -> {
+					if(f != null) f.cancel(true);
+				});
+				Thread.currentThread().interrupt();
+				throw new TestLinkException("Interrupted while creating test cases in project " + projectName, e);
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * Caches the complete test suite hierarchy of this project, with up to 8
+	 * requests in flight.
+	 * 
+	 * @return the number of test suites visited
+	 * @see #prefetch(Collection, int, int)
+	 */
+	public int prefetch() {
+		return prefetch(Collections.emptyList(), Integer.MAX_VALUE, 8);
+	}
+
+	/**
+	 * Caches the test suite hierarchy below the given root suites by crawling it
+	 * in parallel, so later lookups are served from the cache.<br>
+	 * Only child test suites are prefetched: test cases are loaded per suite
+	 * including all descendants, so prefetching them on every level would load
+	 * the same test cases many times.
+	 * 
+	 * @param rootPaths
+	 *            the paths of the suites to start from, all first level test
+	 *            suites if empty. Paths that do not exist are skipped.
+	 * @param maxDepth
+	 *            the number of levels below the root suites to cache, 0 only
+	 *            resolves the roots
+	 * @param maxInFlight
+	 *            the maximum number of concurrent API calls, reduced to the
+	 *            maximum limit of the {@link TLLimiter} of the connection
+	 * @return the number of test suites visited
+	 * @throws TestLinkException
+	 *             if the child suites of a suite could not be retrieved
+	 */
+	public int prefetch(Collection<String> rootPaths, int maxDepth, int maxInFlight) {
+		if(maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be positive, was " + maxInFlight);
+		}
+		// more workers than the limiter admits would only wait for it
+		int parallelism = Math.min(maxInFlight, tl.getLimiter().getMaxLimit());
+		log.debug("Prefetching test suites of project " + projectName + " (depth " + maxDepth + ", " + parallelism
+				+ " requests in flight)");
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<TLTestSuite> roots = new ArrayList<>();
+			if(rootPaths.isEmpty()) {
+				roots.addAll(getFirstLevelTestSuites());
+			} else {
+				rootPaths.forEach(path -> getTestSuiteByPath(path).ifPresent(roots::add));
+			}
+			List<TLPrefetchTask> tasks = roots.stream().map(root -> new TLPrefetchTask(root, maxDepth))
+					.collect(Collectors.toList());
+			tasks.forEach(pool::execute);
+			int visited = tasks.stream().mapToInt(TLPrefetchTask::join).sum();
+			log.debug("Prefetched " + visited + " test suites of project " + projectName);
+			return visited;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/*
+	 * Snapshots
+	 */
+
+	/**
+	 * Writes the cached test suite hierarchy of this project, including cached
+	 * test cases, to a snapshot file. Content that is not cached yet is not
+	 * loaded for the snapshot.
+	 * 
+	 * @param file
+	 *            the snapshot file, replaced if it exists
+	 * @throws TestLinkException
+	 *             if the snapshot could not be written
+	 */
+	public void saveSnapshot(Path file) {
+		log.debug("Saving snapshot of project " + projectName + " to " + file);
+		try {
+			Path parent = file.toAbsolutePath().getParent();
+			Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+			try {
+				try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files
+						.newOutputStream(tmp))))) {
+					TLChildren<TLTestSuite> suites = cachedFirstLevelTestSuites.get();
+					TLSnapshot.write(this, suites == null ? null : suites.asList(), out);
+				}
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch(IOException e) {
+			throw new TestLinkException("Failed to save snapshot of project " + projectName + " to " + file, e);
+		}
+	}
+
+	/**
+	 * Fills the cache of this project from a snapshot file written by
+	 * {@link #saveSnapshot(Path)}, so path lookups are served without API calls.
+	 * The cached content is then compared with testlink in the background, out of
+	 * date parts are replaced.<br>
+	 * Nothing is loaded if the first level test suites of this project are
+	 * already cached or the snapshot is missing or unreadable.
+	 * 
+	 * @param file
+	 *            the snapshot file
+	 * @return An {@code Optional} containing the background revalidation if the
+	 *         snapshot was loaded
+	 */
+	public Optional<CompletableFuture<Void>> loadSnapshot(Path file) {
+		List<TLTestSuite> suites;
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(
+				file))))) {
+			suites = TLSnapshot.read(this, in);
+		} catch(NoSuchFileException e) {
+			log.debug("No snapshot of project " + projectName + " at " + file);
+			return Optional.empty();
+		} catch(IOException e) {
+			log.warn("Ignoring unreadable snapshot of project " + projectName + " at " + file, e);
+			return Optional.empty();
+		}
+		if(suites == null) {
+			return Optional.empty();
+		}
+		synchronized(firstLevelTestSuitesLock) {
+			if(cachedFirstLevelTestSuites.get() != null) {
+				log.debug("Test suites of project " + projectName + " already cached, ignoring snapshot");
+				return Optional.empty();
+			}
+			suites.forEach(s -> firstLevelHandles.put(s.getID(), s));
+			cachedFirstLevelTestSuites.set(new TLChildren<>(suites, TLTestSuite::getName));
+		}
+		log.debug("Loaded snapshot of project " + projectName + " from " + file);
+		return Optional.of(revalidate());
+	}
+
+	/**
+	 * Compares all cached test suites and test cases of this project with
+	 * testlink in the background. Out of date content is replaced.
+	 * 
+	 * @return the running revalidation
+	 */
+	public CompletableFuture<Void> revalidate() {
+		return CompletableFuture.runAsync(() -> {
+			try {
+				revalidateCache();
+			} catch(TestLinkAPIException e) {
+				throw new TestLinkException("Failed to revalidate cache of project " + projectName, e);
+			}
+		}, tl.getExecutor());
+	}
 }
@@ -2,7 +2,10 @@ package eu.qedv.tools.ootl;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -42,12 +45,16 @@ public class TLTestSuite {
 	protected final int suiteID;
 	protected final String suiteName;
 
-	// cached content of this suite
-	private List<TLTestSuite> childSuites = null;
-	private List<TLTestCase> childTestcases = null;
+	// cached content of this suite, null until cached or once expired
+	private final TLCachedValue<TLChildren<TLTestSuite>> childSuites;
+	private final TLCachedValue<TLChildren<TLTestCase>> childTestcases;
 
-	private boolean childSuitesCached = false;
-	private boolean childTestcasesCached = false;
+	private final Object childSuitesLock = new Object();
+	private final Object childTestcasesLock = new Object();
+	// every child handle by id, guarded by the lock of its list. Reloading the
+	// content reuses the handles, so resolved paths stay valid once it expired.
+	private final Map<Integer, TLTestSuite> suiteHandles = new HashMap<>();
+	private final Map<Integer, TLTestCase> testcaseHandles = new HashMap<>();
 
 	protected TLTestSuite(TestLink tl, TLTestProject project, TLTestSuite parent, TestSuite suite) {
 		this.tl = tl;
@@ -56,58 +63,203 @@ public class TLTestSuite {
 		this.suite = suite;
 		this.suiteID = suite.getId();
 		this.suiteName = suite.getName();
+		this.childSuites = new TLCachedValue<>(tl.config.cachePolicy, "childTestSuites", tl::getMetrics);
+		this.childTestcases = new TLCachedValue<>(tl.config.cachePolicy, "childTestCases", tl::getMetrics);
 	}
 
-	private void cacheChildSuites() {
-		if(childSuitesCached) return;
-		log.debug("Caching child test suites of " + suiteName);
-		try {
-			TestSuite[] suites = tl.api.getTestSuitesForTestSuite(suiteID);
-			childSuites = Arrays.stream(suites).map(s -> new TLTestSuite(tl, project, this, s)).collect(Collectors
-					.toList());
-			childSuitesCached = true;
-		} catch(TestLinkAPIException e) {
-			throw new TestLinkException("Failed to cache child test suites", e);
+	private TLChildren<TLTestSuite> cacheChildSuites() {
+		TLChildren<TLTestSuite> cached = childSuites.lookup();
+		if(cached != null) return cached;
+		synchronized(childSuitesLock) {
+			cached = childSuites.get();
+			if(cached != null) return cached;
+			log.debug("Caching child test suites of " + suiteName);
+			try {
+				cached = toTestSuites(tl.call("getTestSuitesForTestSuite", api -> api.getTestSuitesForTestSuite(
+						suiteID)));
+				childSuites.set(cached);
+				return cached;
+			} catch(TestLinkAPIException e) {
+				throw new TestLinkException("Failed to cache child test suites", e);
+			}
 		}
 	}
 
-	private void cacheChildTestcases() {
-		if(childTestcasesCached) return;
-		log.debug("Caching child test cases of " + suiteName);
-		try {
-			TestCase[] cases = tl.api.getTestCasesForTestSuite(suiteID, true, TestCaseDetails.FULL);
-			childTestcases = Arrays.stream(cases).map(tc -> new TLTestCase(tl, project, this, tc)).collect(Collectors
-					.toList());
-			childTestcasesCached = true;
-		} catch(TestLinkAPIException e) {
-			throw new TestLinkException("Failed to cache child test cases", e);
+	private TLChildren<TLTestCase> cacheChildTestcases() {
+		TLChildren<TLTestCase> cached = childTestcases.lookup();
+		if(cached != null) return cached;
+		synchronized(childTestcasesLock) {
+			cached = childTestcases.get();
+			if(cached != null) return cached;
+			log.debug("Caching child test cases of " + suiteName);
+			try {
+				cached = toTestCases(tl.call("getTestCasesForTestSuite", api -> api.getTestCasesForTestSuite(suiteID,
+						true, tl.config.testCaseDetails)));
+				childTestcases.set(cached);
+				return cached;
+			} catch(TestLinkAPIException e) {
+				throw new TestLinkException("Failed to cache child test cases", e);
+			}
 		}
 	}
 
+	// must hold childSuitesLock
+	private TLChildren<TLTestSuite> toTestSuites(TestSuite[] suites) {
+		return new TLChildren<>(Arrays.stream(suites).map(this::handle).collect(Collectors.toList()),
+				TLTestSuite::getName);
+	}
+
+	// must hold childTestcasesLock
+	private TLChildren<TLTestCase> toTestCases(TestCase[] cases) {
+		boolean complete = tl.config.testCaseDetails == TestCaseDetails.FULL;
+		return new TLChildren<>(Arrays.stream(cases).map(tc -> handle(tc, complete)).collect(Collectors.toList()),
+				TLTestCase::getName);
+	}
+
+	// must hold childSuitesLock
+	private TLTestSuite handle(TestSuite suite) {
+		TLTestSuite existing = suiteHandles.get(suite.getId());
+		if(existing != null && existing.describes(suite)) return existing;
+		TLTestSuite created = new TLTestSuite(tl, project, this, suite);
+		suiteHandles.put(suite.getId(), created);
+		return created;
+	}
+
+	// must hold childTestcasesLock
+	private TLTestCase handle(TestCase testcase, boolean complete) {
+		TLTestCase existing = testcaseHandles.get(testcase.getId());
+		if(existing != null && existing.describes(testcase)) return existing;
+		TLTestCase created = new TLTestCase(tl, project, this, testcase, complete);
+		testcaseHandles.put(testcase.getId(), created);
+		return created;
+	}
+
 	private TLTestCase createTestCase(String testCaseName, String summary, List<TestCaseStep> steps) {
 		String key = suiteName + ":" + testCaseName;
 		if(!tl.config.createTestCase) {
 			throw new MissingPermissionException("Creating test cases not permitted");
 		}
 
+		// cached before creating, otherwise the new test case would be loaded and added
+		TLChildren<TLTestCase> testcases = cacheChildTestcases();
 		log.debug("Creating test case " + key);
 		TestCase testcase;
 		try {
-			testcase = tl.api.createTestCase(testCaseName, suiteID, project.getID(), tl.username, summary, steps, "",
-					TestCaseStatus.FINAL, TestImportance.MEDIUM, ExecutionType.AUTOMATED, 0, 0, true,
-					ActionOnDuplicate.BLOCK);
+			testcase = tl.call("createTestCase", api -> api.createTestCase(testCaseName, suiteID, project.getID(),
+					tl.username, summary, steps, "", TestCaseStatus.FINAL, TestImportance.MEDIUM,
+					ExecutionType.AUTOMATED, 0, 0, true, ActionOnDuplicate.BLOCK));
 			if(testcase.getId() == -1) {
 				throw new FailedCreationException("Failed to create test case " + key + " (testlink returned id -1)");
 			}
 		} catch(TestLinkAPIException e) {
 			throw new FailedCreationException("Failed to create test case " + key, e);
 		}
-		TLTestCase tc = new TLTestCase(tl, project, this, testcase);
 		log.debug("Created test case " + key);
 
-		cacheChildTestcases();
-		childTestcases.add(tc);
-		return tc;
+		synchronized(childTestcasesLock) {
+			TLTestCase tc = handle(testcase, true);
+			Optional<TLTestCase> existing = testcases.get(testCaseName);
+			if(existing.isPresent()) return existing.get();
+			testcases.add(tc);
+			return tc;
+		}
+	}
+
+	/**
+	 * Caches the content of a test suite just created, which is empty
+	 */
+	void markCreated() {
+		childSuites.set(new TLChildren<>(Collections.emptyList(), TLTestSuite::getName));
+		childTestcases.set(new TLChildren<>(Collections.emptyList(), TLTestCase::getName));
+	}
+
+	/*
+	 * Snapshot support
+	 */
+
+	List<TLTestSuite> getCachedTestSuites() {
+		TLChildren<TLTestSuite> suites = childSuites.get();
+		return suites == null ? null : suites.asList();
+	}
+
+	List<TLTestCase> getCachedTestCases() {
+		TLChildren<TLTestCase> testcases = childTestcases.get();
+		return testcases == null ? null : testcases.asList();
+	}
+
+	void restoreCache(List<TLTestSuite> suites, List<TLTestCase> testcases) {
+		synchronized(childSuitesLock) {
+			if(suites != null) suites.forEach(s -> suiteHandles.put(s.getID(), s));
+			childSuites.set(suites == null ? null : new TLChildren<>(suites, TLTestSuite::getName));
+		}
+		synchronized(childTestcasesLock) {
+			if(testcases != null) testcases.forEach(tc -> testcaseHandles.put(tc.getID(), tc));
+			childTestcases.set(testcases == null ? null : new TLChildren<>(testcases, TLTestCase::getName));
+		}
+	}
+
+	/**
+	 * Compares the cached content of this suite and its descendants with
+	 * testlink. Out of date child lists are replaced by the current content.
+	 * 
+	 * @return true if any cached content changed
+	 */
+	boolean revalidate() {
+		boolean changed = false;
+		TLChildren<TLTestSuite> suites = childSuites.get();
+		if(suites != null) {
+			TestSuite[] current = tl.call("getTestSuitesForTestSuite", api -> api.getTestSuitesForTestSuite(
+					suiteID));
+			if(sameTestSuites(suites.asList(), current)) {
+				for(TLTestSuite child : suites.asList()) {
+					changed |= child.revalidate();
+				}
+			} else {
+				log.debug("Cached child test suites of " + suiteName + " out of date");
+				synchronized(childSuitesLock) {
+					if(childSuites.get() == suites) childSuites.set(toTestSuites(current));
+				}
+				changed = true;
+			}
+		}
+		TLChildren<TLTestCase> testcases = childTestcases.get();
+		if(testcases != null) {
+			TestCase[] current = tl.call("getTestCasesForTestSuite", api -> api.getTestCasesForTestSuite(suiteID, true,
+					tl.config.testCaseDetails));
+			if(!sameTestCases(testcases.asList(), current)) {
+				log.debug("Cached child test cases of " + suiteName + " out of date");
+				synchronized(childTestcasesLock) {
+					if(childTestcases.get() == testcases) childTestcases.set(toTestCases(current));
+				}
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	static boolean sameTestSuites(List<TLTestSuite> cached, TestSuite[] current) {
+		if(cached.size() != current.length) return false;
+		for(int i = 0; i < current.length; ++i) {
+			if(!cached.get(i).describes(current[i])) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the test suite listed by testlink was neither renamed nor
+	 *         changed
+	 */
+	boolean describes(TestSuite current) {
+		return suiteID == current.getId() && suiteName.equals(current.getName()) && Objects.equals(suite
+				.getDetails(), current.getDetails());
+	}
+
+	private static boolean sameTestCases(List<TLTestCase> cached, TestCase[] current) {
+		if(cached.size() != current.length) return false;
+		for(int i = 0; i < current.length; ++i) {
+			if(!cached.get(i).describes(current[i])) return false;
+		}
+		return true;
 	}
 
 	/*
@@ -136,8 +288,7 @@ public class TLTestSuite {
 	 * @return an unmodifiable {@code List} of this test suite's children
 	 */
 	public List<TLTestSuite> getTestSuites() {
-		cacheChildSuites();
-		return Collections.unmodifiableList(childSuites);
+		return cacheChildSuites().asList();
 	}
 
 	/**
@@ -148,7 +299,7 @@ public class TLTestSuite {
 	 * @return An {@code Optional} containing the test suite
 	 */
 	public Optional<TLTestSuite> getTestSuite(String testSuiteName) {
-		return getTestSuites().stream().filter(s -> s.getName().equals(testSuiteName)).findAny();
+		return cacheChildSuites().get(testSuiteName);
 	}
 
 	/**
@@ -169,18 +320,23 @@ public class TLTestSuite {
 		log.debug("Creating test suite " + key);
 		TestSuite suite;
 		try {
-			suite = tl.api.createTestSuite(project.getID(), testSuiteName, "", suiteID, 0, true,
-					ActionOnDuplicate.BLOCK);
+			suite = tl.call("createTestSuite", api -> api.createTestSuite(project.getID(), testSuiteName, "",
+					suiteID, 0, true, ActionOnDuplicate.BLOCK));
 
 		} catch(TestLinkAPIException e) {
 			throw new FailedCreationException("Failed to create test suite " + key, e);
 		}
-		TLTestSuite ts = new TLTestSuite(tl, project, this, suite);
 		log.debug("Created test suite " + key);
 
-		cacheChildSuites();
-		childSuites.add(ts);
-		return ts;
+		synchronized(childSuitesLock) {
+			TLChildren<TLTestSuite> suites = cacheChildSuites();
+			Optional<TLTestSuite> existing = suites.get(testSuiteName);
+			if(existing.isPresent()) return existing.get();
+			TLTestSuite ts = handle(suite);
+			ts.markCreated();
+			suites.add(ts);
+			return ts;
+		}
 	}
 
 	/**
@@ -189,8 +345,7 @@ public class TLTestSuite {
 	 * @return an unmodifiable {@code List} of the child test cases
 	 */
 	public List<TLTestCase> getTestCases() {
-		cacheChildTestcases();
-		return Collections.unmodifiableList(childTestcases);
+		return cacheChildTestcases().asList();
 	}
 
 	/**
@@ -201,7 +356,7 @@ public class TLTestSuite {
 	 * @return the test case if it exists, null otherwise
 	 */
 	public Optional<TLTestCase> getTestCase(String testCaseName) {
-		return getTestCases().stream().filter(tc -> tc.getName().equals(testCaseName)).findAny();
+		return cacheChildTestcases().get(testCaseName);
 	}
 
 	/**
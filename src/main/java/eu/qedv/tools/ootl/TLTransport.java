@@ -0,0 +1,341 @@
+package eu.qedv.tools.ootl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.StatusLine;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.apache.xmlrpc.XmlRpcException;
+import org.apache.xmlrpc.XmlRpcRequest;
+import org.apache.xmlrpc.client.XmlRpcClient;
+import org.apache.xmlrpc.client.XmlRpcClientException;
+import org.apache.xmlrpc.client.XmlRpcHttpClientConfig;
+import org.apache.xmlrpc.client.XmlRpcHttpTransport;
+import org.apache.xmlrpc.client.XmlRpcHttpTransportException;
+import org.apache.xmlrpc.common.XmlRpcStreamRequestConfig;
+import org.xml.sax.SAXException;
+
+/**
+ * HTTP transport of the XML-RPC calls to testlink, keeping connections alive
+ * in a pool shared by every connection and handle using it.
+ * <p>
+ * The default transport of {@code TestLinkAPI} leaves connection reuse to
+ * {@code HttpURLConnection}, which keeps only a few idle connections, and
+ * never asks for compressed responses. This transport keeps up to
+ * {@code maxConnections} connections to the server, asks for gzip compressed
+ * responses and optionally compresses requests, which testlink itself only
+ * understands if the web server decompresses them.
+ * <p>
+ * With a batch window, concurrent calls to the same server are coalesced into
+ * {@code system.multicall} requests, which testlink answers in one round trip.
+ * Callers still get their own result, the batching is invisible to the
+ * handles. As every batched call waits for the window to pass, batching only
+ * pays off with many concurrent calls, which also needs a {@link TLLimiter}
+ * allowing them.
+ * <p>
+ * The default transport is shared by all connections not given one and is
+ * never closed. A transport created for a connection should be closed once
+ * the connection is no longer used.
+ *
+ * @author dimasinger
+ *
+ */
+public class TLTransport implements Closeable {
+
+	private static final String USER_AGENT = XmlRpcHttpTransport.USER_AGENT + " (Apache HttpClient)";
+
+	private static volatile TLTransport defaultTransport;
+
+	protected final int maxConnections;
+	protected final Duration connectTimeout;
+	protected final Duration readTimeout;
+	protected final boolean gzipRequests;
+	protected final Duration batchWindow;
+	protected final int maxBatchSize;
+
+	private final PoolingHttpClientConnectionManager pool;
+	private final CloseableHttpClient client;
+
+	// batchers by server URL
+	private final Map<String, TLBatcher> batchers = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a transport with up to 64 connections, like the maximum of the
+	 * default {@link TLLimiter}, 10 seconds to connect, 60 seconds to answer and
+	 * uncompressed requests, without batching
+	 */
+	public TLTransport() {
+		this(64, Duration.ofSeconds(10), Duration.ofSeconds(60), false);
+	}
+
+	/**
+	 * Creates a transport sending every call on its own
+	 *
+	 * @see #TLTransport(int, Duration, Duration, boolean, Duration, int)
+	 */
+	public TLTransport(int maxConnections, Duration connectTimeout, Duration readTimeout, boolean gzipRequests) {
+		this(maxConnections, connectTimeout, readTimeout, gzipRequests, null, 1);
+	}
+
+	/**
+	 * Creates a transport
+	 *
+	 * @param maxConnections
+	 *            the maximum number of connections kept to the server, calls
+	 *            beyond it wait for a free connection
+	 * @param connectTimeout
+	 *            how long to wait for a connection, either to be established or
+	 *            to become free in the pool
+	 * @param readTimeout
+	 *            how long to wait for data of a response before giving up
+	 * @param gzipRequests
+	 *            whether to compress requests, only if the web server in front
+	 *            of testlink decompresses them
+	 * @param batchWindow
+	 *            how long a call waits for other calls to send along with it
+	 *            in one multicall, null to send every call on its own
+	 * @param maxBatchSize
+	 *            the maximum number of calls in one multicall, a full batch is
+	 *            sent without waiting for the window to pass
+	 */
+	public TLTransport(int maxConnections, Duration connectTimeout, Duration readTimeout, boolean gzipRequests,
+			Duration batchWindow, int maxBatchSize) {
+		if(maxConnections < 1) {
+			throw new IllegalArgumentException("Maximum connections must be positive, was " + maxConnections);
+		}
+		if(maxBatchSize < 1) {
+			throw new IllegalArgumentException("Maximum batch size must be positive, was " + maxBatchSize);
+		}
+		this.maxConnections = maxConnections;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.gzipRequests = gzipRequests;
+		this.batchWindow = batchWindow;
+		this.maxBatchSize = maxBatchSize;
+
+		pool = new PoolingHttpClientConnectionManager();
+		pool.setMaxTotal(maxConnections);
+		pool.setDefaultMaxPerRoute(maxConnections);
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(toMillis(connectTimeout))
+				.setConnectionRequestTimeout(toMillis(connectTimeout))
+				.setSocketTimeout(toMillis(readTimeout))
+				.build();
+		// the client adds Accept-Encoding and decompresses responses itself
+		client = HttpClients.custom()
+				.setConnectionManager(pool)
+				.setDefaultRequestConfig(requestConfig)
+				.disableCookieManagement()
+				.build();
+	}
+
+	private static int toMillis(Duration timeout) {
+		return (int) Math.min(Integer.MAX_VALUE, timeout.toMillis());
+	}
+
+	/**
+	 * @return the transport used by connections not given one
+	 */
+	public static TLTransport getDefault() {
+		TLTransport current = defaultTransport;
+		if(current == null) {
+			synchronized(TLTransport.class) {
+				current = defaultTransport;
+				if(current == null) {
+					current = new TLTransport();
+					defaultTransport = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Makes an XML-RPC client send all further calls through this transport
+	 */
+	public void install(XmlRpcClient xmlRpcClient) {
+		xmlRpcClient.setTransportFactory(() -> new Transport(xmlRpcClient));
+	}
+
+	/**
+	 * Closes all pooled connections, calls through this transport fail
+	 * afterwards
+	 */
+	@Override
+	public void close() throws IOException {
+		client.close();
+	}
+
+	/*
+	 * Getters
+	 */
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public Duration getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public Duration getReadTimeout() {
+		return readTimeout;
+	}
+
+	public boolean isGzipRequests() {
+		return gzipRequests;
+	}
+
+	public Duration getBatchWindow() {
+		return batchWindow;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * @return the number of multicalls sent
+	 */
+	public long getMulticallCount() {
+		return batchers.values().stream().mapToLong(b -> b.multicalls.sum()).sum();
+	}
+
+	/**
+	 * @return the number of calls sent as part of a multicall
+	 */
+	public long getBatchedCallCount() {
+		return batchers.values().stream().mapToLong(b -> b.batchedCalls.sum()).sum();
+	}
+
+	/**
+	 * @return the number of pooled connections currently idle
+	 */
+	public int getIdleConnections() {
+		return pool.getTotalStats().getAvailable();
+	}
+
+	/**
+	 * @return the number of pooled connections currently in use by a call
+	 */
+	public int getLeasedConnections() {
+		return pool.getTotalStats().getLeased();
+	}
+
+	/**
+	 * A single call, created by the XML-RPC client for every request
+	 */
+	private class Transport extends XmlRpcHttpTransport {
+
+		private final XmlRpcClient xmlRpcClient;
+		private HttpPost post;
+		private CloseableHttpResponse response;
+
+		Transport(XmlRpcClient xmlRpcClient) {
+			super(xmlRpcClient, USER_AGENT);
+			this.xmlRpcClient = xmlRpcClient;
+		}
+
+		@Override
+		public Object sendRequest(XmlRpcRequest request) throws XmlRpcException {
+			XmlRpcHttpClientConfig config = (XmlRpcHttpClientConfig) request.getConfig();
+			if(batchWindow == null || request.getMethodName().startsWith("system.")) {
+				return send(request);
+			}
+			TLBatcher batcher = batchers.computeIfAbsent(config.getServerURL().toExternalForm(),
+					url -> new TLBatcher(batchWindow.toNanos(), maxBatchSize));
+			// a new transport per request, as this one is busy with the batch
+			return batcher.execute(request, r -> new Transport(xmlRpcClient).send(r));
+		}
+
+		private Object send(XmlRpcRequest request) throws XmlRpcException {
+			XmlRpcHttpClientConfig config = (XmlRpcHttpClientConfig) request.getConfig();
+			try {
+				post = new HttpPost(config.getServerURL().toURI());
+			} catch(URISyntaxException e) {
+				throw new XmlRpcClientException("Invalid testlink URL " + config.getServerURL(), e);
+			}
+			return super.sendRequest(request);
+		}
+
+		@Override
+		protected void setRequestHeader(String name, String value) {
+			// the client sets the length and negotiates compressed responses
+			if("Content-Length".equalsIgnoreCase(name) || "Accept-Encoding".equalsIgnoreCase(name)) return;
+			post.setHeader(name, value);
+		}
+
+		@Override
+		protected void setCompressionHeaders(XmlRpcHttpClientConfig config) {
+			if(gzipRequests) {
+				setRequestHeader("Content-Encoding", "gzip");
+			}
+		}
+
+		@Override
+		protected boolean isCompressingRequest(XmlRpcStreamRequestConfig config) {
+			return gzipRequests;
+		}
+
+		@Override
+		protected boolean isUsingByteArrayOutput(XmlRpcHttpClientConfig config) {
+			// the request is buffered in writeRequest, after compression
+			return false;
+		}
+
+		@Override
+		protected void writeRequest(ReqWriter writer) throws XmlRpcException, IOException, SAXException {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			writer.write(body);
+			post.setEntity(new ByteArrayEntity(body.toByteArray()));
+			response = client.execute(post);
+			StatusLine status = response.getStatusLine();
+			if(status.getStatusCode() < 200 || status.getStatusCode() > 299) {
+				throw new XmlRpcHttpTransportException(status.getStatusCode(), status.getReasonPhrase(),
+						"HTTP server returned unexpected status: " + status.getReasonPhrase());
+			}
+		}
+
+		@Override
+		protected boolean isResponseGzipCompressed(XmlRpcStreamRequestConfig config) {
+			// already decompressed by the client
+			return false;
+		}
+
+		@Override
+		protected InputStream getInputStream() throws XmlRpcException {
+			try {
+				return response.getEntity().getContent();
+			} catch(IOException e) {
+				throw new XmlRpcClientException("Failed to read testlink's response", e);
+			}
+		}
+
+		@Override
+		protected void close() throws XmlRpcClientException {
+			if(response == null) return;
+			try {
+				// reading the response to its end returns the connection to the pool
+				EntityUtils.consume(response.getEntity());
+				response.close();
+			} catch(IOException e) {
+				throw new XmlRpcClientException("Failed to close connection to testlink", e);
+			} finally {
+				response = null;
+			}
+		}
+	}
+}
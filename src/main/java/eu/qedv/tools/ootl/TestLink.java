@@ -1,9 +1,12 @@
 package eu.qedv.tools.ootl;
 
+import java.lang.reflect.Method;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -11,6 +14,8 @@ import org.apache.commons.logging.LogFactory;
 import br.eti.kinoshita.testlinkjavaapi.TestLinkAPI;
 import br.eti.kinoshita.testlinkjavaapi.model.TestProject;
 import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
+import eu.qedv.tools.ootl.async.AsyncTestLink;
+import eu.qedv.tools.ootl.metrics.TLMetrics;
 
 /**
  * Holds the active connection to testlink as represented by a TestLinkAPI
@@ -23,7 +28,14 @@ import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
  * hide implementation details (like IDs) from the user. It aims to make using
  * the API more intuitive and less error-prone. It improves performance by
  * caching almost everything, which is crucial for large operations such as
- * copying hundreds of test cases.
+ * copying hundreds of test cases. By default cached objects are kept forever,
+ * a {@link CachePolicy} in the {@link TestLinkConfig} bounds the size and age
+ * of each cache for long running processes. The number of concurrent API calls
+ * adapts to the latency of the server, see {@link TLLimiter}, and calls reuse
+ * pooled connections, see {@link TLTransport}.
+ * <p>
+ * A {@code TestLink} instance and all handles obtained from it are safe for
+ * concurrent use by multiple threads.
  * 
  * @author dimasinger
  * 
@@ -38,27 +50,171 @@ public class TestLink {
     protected TestLinkConfig config;
 
     // cached test projects
-    private Map<String, Optional<TLTestProject>> projects = new HashMap<>();
-    
+    private final TLCache<String, Optional<TLTestProject>> projects;
+
+    // bounds the concurrent API calls of this instance and all handles
+    private volatile TLLimiter limiter = new TLLimiter();
+
+    // receives latencies of API calls and cache statistics
+    private volatile TLMetrics metrics = TLMetrics.NONE;
+
+    // executor running asynchronous API calls, created on first use
+    private volatile ExecutorService executor;
+    private final Object executorLock = new Object();
+
     public TestLink(TestLinkConfig config, TestLinkAPI api, String username) {
     	this.username = username;
     	this.api = api;
     	this.config = config;
+    	this.projects = new TLCache<>(config.cachePolicy, "projects", this::getMetrics);
     }
     
+    /**
+     * Connects to testlink through the {@linkplain TLTransport#getDefault()
+     * default transport}
+     */
     public TestLink(TestLinkConfig config, URL testlinkURL, String developerKey, String username) {
+    	this(config, testlinkURL, developerKey, username, TLTransport.getDefault());
+    }
+
+    /**
+     * Connects to testlink through the given transport. Only checking the
+     * developer key, while connecting, uses the default transport of
+     * {@code TestLinkAPI}.
+     */
+    public TestLink(TestLinkConfig config, URL testlinkURL, String developerKey, String username,
+            TLTransport transport) {
     	this(config, new TestLinkAPI(testlinkURL, developerKey), username);
+    	transport.install(api.getXmlRpcClient());
+    }
+
+    /**
+     * Creates the default executor for asynchronous API calls: virtual threads
+     * if the runtime supports them, otherwise an unbounded pool of daemon
+     * threads. Either way the calls spend their time waiting on the network.
+     */
+    private static ExecutorService newDefaultExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.debug("Virtual threads not available, using platform threads for asynchronous API calls");
+        }
+        AtomicInteger threads = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "testlink-async-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the executor running asynchronous API calls
+     */
+    public ExecutorService getExecutor() {
+        ExecutorService current = executor;
+        if (current == null) {
+            synchronized (executorLock) {
+                current = executor;
+                if (current == null) {
+                    current = newDefaultExecutor();
+                    executor = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the limiter of concurrent API calls
+     */
+    public TLLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Replaces the limiter of concurrent API calls, like with a fixed limit.
+     * Calls already waiting keep the previous limiter.
+     */
+    public void setLimiter(TLLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    public TLMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets where the latencies of API calls and the statistics of all caches
+     * are recorded, registering the gauges {@code inFlight} and
+     * {@code queueDepth} of the concurrency limit
+     */
+    public void setMetrics(TLMetrics metrics) {
+        this.metrics = metrics;
+        metrics.gauge("inFlight", () -> limiter.getInFlight());
+        metrics.gauge("queueDepth", () -> limiter.getQueueDepth());
     }
 
     /*
      * API calls
      */
 
+    /**
+     * A single call to the testlink API
+     */
+    @FunctionalInterface
+    interface APICall<T> {
+        T call(TestLinkAPI api);
+    }
+
+    /**
+     * Makes a call to the testlink API within the limit of concurrent calls and
+     * records it in the metrics. All API calls of the handles go through here.
+     *
+     * @param method
+     *            the name of the {@code TestLinkAPI} method called
+     */
+    <T> T call(String method, APICall<T> call) {
+        TLLimiter current = limiter;
+        long start = current.acquire();
+        boolean failed = false;
+        boolean dropped = false;
+        try {
+            return call.call(api);
+        } catch (TestLinkAPIException e) {
+            failed = true;
+            // errors reported by testlink have no cause, transport errors do
+            dropped = e.getCause() != null;
+            throw e;
+        } catch (RuntimeException e) {
+            failed = dropped = true;
+            throw e;
+        } finally {
+            current.release(method, start, dropped);
+            metrics.apiCall(method, System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * @return true if the error or one of its causes is a call that did not
+     *         reach testlink. Errors reported by testlink have no cause.
+     */
+    static boolean isTransportError(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TestLinkAPIException && t.getCause() != null)
+                return true;
+        }
+        return false;
+    }
+
     private Optional<TLTestProject> loadTestProject(String testProjectName) {
         try {
-            TestProject project = api.getTestProjectByName(testProjectName);
+            TestProject project = call("getTestProjectByName", api -> api.getTestProjectByName(testProjectName));
             return Optional.of(new TLTestProject(this, project));
         } catch (TestLinkAPIException e) {
+            // only an answer of testlink is cached as a missing test project
+            if (isTransportError(e))
+                throw e;
             log.debug("No such test project: " + testProjectName, e);
             return Optional.empty();
         }
@@ -66,8 +222,28 @@ public class TestLink {
 
     /**
      * Creates a handle to a test project, through which all API calls are then made
+     * 
+     * @throws TestLinkAPIException
+     *             if testlink could not be reached
      */
     public Optional<TLTestProject> getTestProject(String testProjectName) {
-        return projects.computeIfAbsent(testProjectName, this::loadTestProject);
+        return projects.get(testProjectName, this::loadTestProject);
+    }
+
+    /**
+     * Creates an asynchronous view of this connection. All API calls made
+     * through it run on {@link #getExecutor()} and return
+     * {@code CompletableFuture}s.
+     */
+    public AsyncTestLink async() {
+        return new AsyncTestLink(this, getExecutor());
+    }
+
+    /**
+     * Creates an asynchronous view of this connection, running all API calls on
+     * the given executor
+     */
+    public AsyncTestLink async(Executor executor) {
+        return new AsyncTestLink(this, executor);
     }
 }
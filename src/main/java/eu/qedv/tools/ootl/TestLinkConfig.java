@@ -1,7 +1,10 @@
 package eu.qedv.tools.ootl;
 
+import br.eti.kinoshita.testlinkjavaapi.constants.TestCaseDetails;
+
 /**
- * Structure holding permissions for actions in TestLink
+ * Structure holding permissions for actions in TestLink and the policy for
+ * caching TestLink objects
  * 
  * @author dimasinger
  *
@@ -16,19 +19,50 @@ public class TestLinkConfig {
 
 	protected final boolean createBuild;
 
+	protected final CachePolicy cachePolicy;
+
+	protected final TestCaseDetails testCaseDetails;
+
     public static final TestLinkConfig NO_PERMISSIONS = new TestLinkConfig();
     public static final TestLinkConfig ALL_PERMISSIONS = new TestLinkConfig(true, true, true, true, true);
     
     /**
-     * Creates a configuration with the specified permissions
+     * Creates a configuration with the specified permissions, caching policy and
+     * test case details
+     * 
+     * @param testCaseDetails
+     *            the details loaded with the test cases of a test suite. With
+     *            anything but {@code FULL}, summary and steps of a test case are
+     *            loaded on first use, like when updating it.
      */
     public TestLinkConfig(boolean createTestCase, boolean updateTestCase, boolean executeTestCase, boolean createTestSuite,
-            boolean createBuild) {
+            boolean createBuild, CachePolicy cachePolicy, TestCaseDetails testCaseDetails) {
         this.createTestCase = createTestCase;
         this.updateTestCase = updateTestCase;
         this.executeTestCase = executeTestCase;
         this.createTestSuite = createTestSuite;
         this.createBuild = createBuild;
+        this.cachePolicy = cachePolicy;
+        this.testCaseDetails = testCaseDetails;
+    }
+
+    /**
+     * Creates a configuration with the specified permissions and caching policy,
+     * loading full test cases
+     */
+    public TestLinkConfig(boolean createTestCase, boolean updateTestCase, boolean executeTestCase, boolean createTestSuite,
+            boolean createBuild, CachePolicy cachePolicy) {
+        this(createTestCase, updateTestCase, executeTestCase, createTestSuite, createBuild, cachePolicy,
+                TestCaseDetails.FULL);
+    }
+
+    /**
+     * Creates a configuration with the specified permissions, caching everything
+     * forever
+     */
+    public TestLinkConfig(boolean createTestCase, boolean updateTestCase, boolean executeTestCase, boolean createTestSuite,
+            boolean createBuild) {
+        this(createTestCase, updateTestCase, executeTestCase, createTestSuite, createBuild, CachePolicy.UNBOUNDED);
     }
 
     /**
@@ -37,4 +71,12 @@ public class TestLinkConfig {
     public TestLinkConfig() {
         this(false, false, false, false, false);
     }
+
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    public TestCaseDetails getTestCaseDetails() {
+        return testCaseDetails;
+    }
 }
@@ -0,0 +1,83 @@
+package eu.qedv.tools.ootl.async;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import eu.qedv.tools.ootl.TLBuild;
+import eu.qedv.tools.ootl.TLExecution;
+import eu.qedv.tools.ootl.TLExecutionReport;
+import eu.qedv.tools.ootl.TLExecutionRequest;
+import eu.qedv.tools.ootl.TLTestCase;
+
+/**
+ * Asynchronous view of a {@link TLBuild}
+ * 
+ * @author dimasinger
+ *
+ */
+public class AsyncTLBuild {
+
+	protected final TLBuild build;
+	protected final Executor executor;
+
+	public AsyncTLBuild(TLBuild build, Executor executor) {
+		this.build = build;
+		this.executor = executor;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	/**
+	 * @return the blocking handle this view wraps
+	 */
+	public TLBuild sync() {
+		return build;
+	}
+
+	public String getPlanName() {
+		return build.getPlanName();
+	}
+
+	public String getBuildName() {
+		return build.getBuildName();
+	}
+
+	/*
+	 * API calls
+	 */
+
+	/**
+	 * @see TLBuild#getLastExecution(eu.qedv.tools.ootl.TLTestCase)
+	 */
+	public CompletableFuture<Optional<TLExecution>> getLastExecution(AsyncTLTestCase testcase) {
+		return CompletableFuture.supplyAsync(() -> build.getLastExecution(testcase.sync()), executor);
+	}
+
+	/**
+	 * @see TLBuild#getLastExecutions(Collection, int, boolean)
+	 */
+	public CompletableFuture<Map<TLTestCase, TLExecution>> getLastExecutions(Collection<TLTestCase> testcases,
+			int parallelism, boolean useCache) {
+		return CompletableFuture.supplyAsync(() -> build.getLastExecutions(testcases, parallelism, useCache),
+				executor);
+	}
+
+	/**
+	 * @see TLBuild#executeAll(Collection, int)
+	 */
+	public CompletableFuture<TLExecutionReport> executeAll(Collection<TLExecutionRequest> requests, int parallelism) {
+		return CompletableFuture.supplyAsync(() -> build.executeAll(requests, parallelism), executor);
+	}
+
+	/**
+	 * @see TLBuild#addTestcaseToTestPlan(eu.qedv.tools.ootl.TLTestCase)
+	 */
+	public CompletableFuture<Integer> addTestcaseToTestPlan(AsyncTLTestCase testcase) {
+		return CompletableFuture.supplyAsync(() -> build.addTestcaseToTestPlan(testcase.sync()), executor);
+	}
+}
@@ -0,0 +1,71 @@
+package eu.qedv.tools.ootl.async;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import eu.qedv.tools.ootl.TLTestCase;
+import eu.qedv.tools.ootl.structure.ResultCode;
+import eu.qedv.tools.ootl.structure.TLTestStep;
+
+/**
+ * Asynchronous view of a {@link TLTestCase}
+ * 
+ * @author dimasinger
+ *
+ */
+public class AsyncTLTestCase {
+
+	protected final TLTestCase testcase;
+	protected final Executor executor;
+
+	public AsyncTLTestCase(TLTestCase testcase, Executor executor) {
+		this.testcase = testcase;
+		this.executor = executor;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	/**
+	 * @return the blocking handle this view wraps
+	 */
+	public TLTestCase sync() {
+		return testcase;
+	}
+
+	public AsyncTLTestSuite getParent() {
+		return new AsyncTLTestSuite(testcase.getParent(), executor);
+	}
+
+	public String getName() {
+		return testcase.getName();
+	}
+
+	public int getID() {
+		return testcase.getID();
+	}
+
+	public int getVersion() {
+		return testcase.getVersion();
+	}
+
+	/*
+	 * API calls
+	 */
+
+	/**
+	 * @see TLTestCase#update(String, TLTestStep)
+	 */
+	public CompletableFuture<AsyncTLTestCase> update(String summary, TLTestStep result) {
+		return CompletableFuture.supplyAsync(() -> new AsyncTLTestCase(testcase.update(summary, result), executor),
+				executor);
+	}
+
+	/**
+	 * @see TLTestCase#execute(eu.qedv.tools.ootl.TLBuild, ResultCode, String)
+	 */
+	public CompletableFuture<Boolean> execute(AsyncTLBuild build, ResultCode result, String notes) {
+		return CompletableFuture.supplyAsync(() -> testcase.execute(build.sync(), result, notes), executor);
+	}
+}
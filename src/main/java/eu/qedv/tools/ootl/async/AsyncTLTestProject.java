@@ -0,0 +1,97 @@
+package eu.qedv.tools.ootl.async;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import eu.qedv.tools.ootl.TLTestProject;
+
+/**
+ * Asynchronous view of a {@link TLTestProject}
+ * 
+ * @author dimasinger
+ *
+ */
+public class AsyncTLTestProject {
+
+	protected final TLTestProject project;
+	protected final Executor executor;
+
+	public AsyncTLTestProject(TLTestProject project, Executor executor) {
+		this.project = project;
+		this.executor = executor;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	/**
+	 * @return the blocking handle this view wraps
+	 */
+	public TLTestProject sync() {
+		return project;
+	}
+
+	public int getID() {
+		return project.getID();
+	}
+
+	public String getName() {
+		return project.getName();
+	}
+
+	/*
+	 * API calls
+	 */
+
+	/**
+	 * @see TLTestProject#createBuild(String, String)
+	 */
+	public CompletableFuture<AsyncTLBuild> createBuild(String testPlanName, String buildName) {
+		return CompletableFuture.supplyAsync(() -> new AsyncTLBuild(project.createBuild(testPlanName, buildName),
+				executor), executor);
+	}
+
+	/**
+	 * @see TLTestProject#getBuild(String, String)
+	 */
+	public CompletableFuture<Optional<AsyncTLBuild>> getBuild(String testPlanName, String buildName) {
+		return CompletableFuture.supplyAsync(() -> project.getBuild(testPlanName, buildName).map(b -> new AsyncTLBuild(
+				b, executor)), executor);
+	}
+
+	/**
+	 * @see TLTestProject#getFirstLevelTestSuites()
+	 */
+	public CompletableFuture<List<AsyncTLTestSuite>> getFirstLevelTestSuites() {
+		return CompletableFuture.supplyAsync(() -> project.getFirstLevelTestSuites().stream().map(
+				s -> new AsyncTLTestSuite(s, executor)).collect(Collectors.toList()), executor);
+	}
+
+	/**
+	 * @see TLTestProject#getFirstLevelTestSuite(String)
+	 */
+	public CompletableFuture<Optional<AsyncTLTestSuite>> getFirstLevelTestSuite(String testSuiteName) {
+		return CompletableFuture.supplyAsync(() -> project.getFirstLevelTestSuite(testSuiteName).map(
+				s -> new AsyncTLTestSuite(s, executor)), executor);
+	}
+
+	/**
+	 * @see TLTestProject#getTestSuiteByPath(List)
+	 */
+	public CompletableFuture<Optional<AsyncTLTestSuite>> getTestSuiteByPath(List<String> testSuitePath) {
+		return CompletableFuture.supplyAsync(() -> project.getTestSuiteByPath(testSuitePath).map(
+				s -> new AsyncTLTestSuite(s, executor)), executor);
+	}
+
+	/**
+	 * @see TLTestProject#getTestSuiteByPath(String)
+	 */
+	public CompletableFuture<Optional<AsyncTLTestSuite>> getTestSuiteByPath(String testSuitePath) {
+		return CompletableFuture.supplyAsync(() -> project.getTestSuiteByPath(testSuitePath).map(
+				s -> new AsyncTLTestSuite(s, executor)), executor);
+	}
+}
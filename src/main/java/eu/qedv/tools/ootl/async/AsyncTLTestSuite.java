@@ -0,0 +1,102 @@
+package eu.qedv.tools.ootl.async;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import eu.qedv.tools.ootl.TLTestSuite;
+import eu.qedv.tools.ootl.structure.TLTestStep;
+
+/**
+ * Asynchronous view of a {@link TLTestSuite}
+ * 
+ * @author dimasinger
+ *
+ */
+public class AsyncTLTestSuite {
+
+	protected final TLTestSuite suite;
+	protected final Executor executor;
+
+	public AsyncTLTestSuite(TLTestSuite suite, Executor executor) {
+		this.suite = suite;
+		this.executor = executor;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	/**
+	 * @return the blocking handle this view wraps
+	 */
+	public TLTestSuite sync() {
+		return suite;
+	}
+
+	public Optional<AsyncTLTestSuite> getParent() {
+		return suite.getParent().map(p -> new AsyncTLTestSuite(p, executor));
+	}
+
+	public String getName() {
+		return suite.getName();
+	}
+
+	public int getID() {
+		return suite.getID();
+	}
+
+	/*
+	 * API calls
+	 */
+
+	/**
+	 * @see TLTestSuite#getTestSuites()
+	 */
+	public CompletableFuture<List<AsyncTLTestSuite>> getTestSuites() {
+		return CompletableFuture.supplyAsync(() -> suite.getTestSuites().stream().map(s -> new AsyncTLTestSuite(s,
+				executor)).collect(Collectors.toList()), executor);
+	}
+
+	/**
+	 * @see TLTestSuite#getTestSuite(String)
+	 */
+	public CompletableFuture<Optional<AsyncTLTestSuite>> getTestSuite(String testSuiteName) {
+		return CompletableFuture.supplyAsync(() -> suite.getTestSuite(testSuiteName).map(s -> new AsyncTLTestSuite(s,
+				executor)), executor);
+	}
+
+	/**
+	 * @see TLTestSuite#createTestSuite(String)
+	 */
+	public CompletableFuture<AsyncTLTestSuite> createTestSuite(String testSuiteName) {
+		return CompletableFuture.supplyAsync(() -> new AsyncTLTestSuite(suite.createTestSuite(testSuiteName),
+				executor), executor);
+	}
+
+	/**
+	 * @see TLTestSuite#getTestCases()
+	 */
+	public CompletableFuture<List<AsyncTLTestCase>> getTestCases() {
+		return CompletableFuture.supplyAsync(() -> suite.getTestCases().stream().map(tc -> new AsyncTLTestCase(tc,
+				executor)).collect(Collectors.toList()), executor);
+	}
+
+	/**
+	 * @see TLTestSuite#getTestCase(String)
+	 */
+	public CompletableFuture<Optional<AsyncTLTestCase>> getTestCase(String testCaseName) {
+		return CompletableFuture.supplyAsync(() -> suite.getTestCase(testCaseName).map(tc -> new AsyncTLTestCase(tc,
+				executor)), executor);
+	}
+
+	/**
+	 * @see TLTestSuite#createTestCase(String, String, TLTestStep)
+	 */
+	public CompletableFuture<AsyncTLTestCase> createTestCase(String testCaseName, String summary, TLTestStep result) {
+		return CompletableFuture.supplyAsync(() -> new AsyncTLTestCase(suite.createTestCase(testCaseName, summary,
+				result), executor), executor);
+	}
+}
@@ -0,0 +1,54 @@
+package eu.qedv.tools.ootl.async;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import eu.qedv.tools.ootl.TestLink;
+
+/**
+ * Asynchronous view of a {@link TestLink} connection.<br>
+ * Every API call is run on an executor and returns a
+ * {@code CompletableFuture}, the handles returned are asynchronous views of
+ * the usual handles. Caching is shared with the wrapped connection.
+ * 
+ * @author dimasinger
+ *
+ */
+public class AsyncTestLink {
+
+	protected final TestLink tl;
+	protected final Executor executor;
+
+	public AsyncTestLink(TestLink tl, Executor executor) {
+		this.tl = tl;
+		this.executor = executor;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	/**
+	 * @return the blocking connection this view wraps
+	 */
+	public TestLink sync() {
+		return tl;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/*
+	 * API calls
+	 */
+
+	/**
+	 * @see TestLink#getTestProject(String)
+	 */
+	public CompletableFuture<Optional<AsyncTLTestProject>> getTestProject(String testProjectName) {
+		return CompletableFuture.supplyAsync(() -> tl.getTestProject(testProjectName).map(
+				p -> new AsyncTLTestProject(p, executor)), executor);
+	}
+}
@@ -0,0 +1,68 @@
+package eu.qedv.tools.ootl.metrics;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Receives measurements of a {@link eu.qedv.tools.ootl.TestLink} connection
+ * and its handles: the latency and outcome of every API call and the hits,
+ * misses and evictions of every cache.
+ * <p>
+ * Methods are called on the threads making the calls, often concurrently, so
+ * implementations must be thread-safe and should not block. All methods do
+ * nothing by default, so implementations only override what they record.
+ * {@link TLMetricsRegistry} is a ready to use implementation.
+ *
+ * @author dimasinger
+ *
+ */
+public interface TLMetrics {
+
+	/**
+	 * Records nothing, the default of every connection
+	 */
+	TLMetrics NONE = new TLMetrics() {
+	};
+
+	/**
+	 * Called after every API call
+	 *
+	 * @param method
+	 *            the name of the {@code TestLinkAPI} method called
+	 * @param latencyNanos
+	 *            the duration of the call, excluding time waiting for the
+	 *            concurrency limit
+	 * @param failed
+	 *            whether the call threw an exception
+	 */
+	default void apiCall(String method, long latencyNanos, boolean failed) {
+	}
+
+	/**
+	 * Called when a lookup is served from a cache
+	 *
+	 * @param cache
+	 *            the name of the cache, like {@code testSuitePaths}
+	 */
+	default void cacheHit(String cache) {
+	}
+
+	/**
+	 * Called when a lookup is not served from a cache
+	 */
+	default void cacheMiss(String cache) {
+	}
+
+	/**
+	 * Called when a cache entry is evicted for its size, time to live or
+	 * reclaimed by the garbage collector
+	 */
+	default void cacheEviction(String cache) {
+	}
+
+	/**
+	 * Called once when the metrics are set on a connection, to register values
+	 * sampled on demand, like the number of API calls in flight
+	 */
+	default void gauge(String name, IntSupplier value) {
+	}
+}
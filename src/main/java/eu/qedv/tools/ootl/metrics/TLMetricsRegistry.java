@@ -0,0 +1,199 @@
+package eu.qedv.tools.ootl.metrics;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * In-memory {@link TLMetrics} keeping counters and latency histograms.
+ * <p>
+ * Recording is lock-free and allocation-free once a method or cache was seen,
+ * so the registry can stay enabled in production. Latencies are counted in
+ * buckets of powers of two nanoseconds, percentiles are therefore accurate to
+ * a factor of two, which is enough to tell network latency from slow
+ * operations.
+ *
+ * @author dimasinger
+ *
+ */
+public class TLMetricsRegistry implements TLMetrics {
+
+	private final Map<String, CallStats> calls = new ConcurrentHashMap<>();
+	private final Map<String, CacheStats> caches = new ConcurrentHashMap<>();
+	private final Map<String, IntSupplier> gauges = new ConcurrentHashMap<>();
+
+	private static class CallStats {
+		// bucket i counts latencies below 2^i nanoseconds
+		final AtomicLongArray buckets = new AtomicLongArray(64);
+		final LongAdder count = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder totalNanos = new LongAdder();
+	}
+
+	private static class CacheStats {
+		final LongAdder hits = new LongAdder();
+		final LongAdder misses = new LongAdder();
+		final LongAdder evictions = new LongAdder();
+	}
+
+	@Override
+	public void apiCall(String method, long latencyNanos, boolean failed) {
+		CallStats stats = calls.get(method);
+		if(stats == null) {
+			stats = calls.computeIfAbsent(method, m -> new CallStats());
+		}
+		long nanos = Math.max(0, latencyNanos);
+		stats.buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+		stats.count.increment();
+		stats.totalNanos.add(nanos);
+		if(failed) {
+			stats.errors.increment();
+		}
+	}
+
+	@Override
+	public void cacheHit(String cache) {
+		cacheStats(cache).hits.increment();
+	}
+
+	@Override
+	public void cacheMiss(String cache) {
+		cacheStats(cache).misses.increment();
+	}
+
+	@Override
+	public void cacheEviction(String cache) {
+		cacheStats(cache).evictions.increment();
+	}
+
+	@Override
+	public void gauge(String name, IntSupplier value) {
+		gauges.put(name, value);
+	}
+
+	private CacheStats cacheStats(String cache) {
+		CacheStats stats = caches.get(cache);
+		return stats != null ? stats : caches.computeIfAbsent(cache, c -> new CacheStats());
+	}
+
+	/*
+	 * Getters
+	 */
+
+	/**
+	 * @return the names of all API methods called so far
+	 */
+	public Set<String> getMethods() {
+		return Collections.unmodifiableSet(new TreeSet<>(calls.keySet()));
+	}
+
+	/**
+	 * @return the names of all caches accessed so far
+	 */
+	public Set<String> getCaches() {
+		return Collections.unmodifiableSet(new TreeSet<>(caches.keySet()));
+	}
+
+	public long getCallCount(String method) {
+		CallStats stats = calls.get(method);
+		return stats == null ? 0 : stats.count.sum();
+	}
+
+	public long getErrorCount(String method) {
+		CallStats stats = calls.get(method);
+		return stats == null ? 0 : stats.errors.sum();
+	}
+
+	public Duration getTotalLatency(String method) {
+		CallStats stats = calls.get(method);
+		return Duration.ofNanos(stats == null ? 0 : stats.totalNanos.sum());
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100, like 99 for the latency 99% of the calls
+	 *            stayed below
+	 * @return the upper bound of the latency bucket holding the percentile, zero
+	 *         if the method was not called
+	 */
+	public Duration getLatencyPercentile(String method, double percentile) {
+		if(percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100, was " + percentile);
+		}
+		CallStats stats = calls.get(method);
+		if(stats == null) return Duration.ZERO;
+		long[] counts = new long[stats.buckets.length()];
+		long total = 0;
+		for(int i = 0; i < counts.length; ++i) {
+			counts[i] = stats.buckets.get(i);
+			total += counts[i];
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for(int i = 0; i < counts.length; ++i) {
+			seen += counts[i];
+			if(seen >= rank && counts[i] > 0) {
+				return Duration.ofNanos(i >= 63 ? Long.MAX_VALUE : 1L << i);
+			}
+		}
+		return Duration.ZERO;
+	}
+
+	public long getHits(String cache) {
+		CacheStats stats = caches.get(cache);
+		return stats == null ? 0 : stats.hits.sum();
+	}
+
+	public long getMisses(String cache) {
+		CacheStats stats = caches.get(cache);
+		return stats == null ? 0 : stats.misses.sum();
+	}
+
+	public long getEvictions(String cache) {
+		CacheStats stats = caches.get(cache);
+		return stats == null ? 0 : stats.evictions.sum();
+	}
+
+	/**
+	 * @return the share of lookups served from the cache, 0 if never accessed
+	 */
+	public double getHitRatio(String cache) {
+		long hits = getHits(cache);
+		long lookups = hits + getMisses(cache);
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * @return the current value of a gauge, like {@code inFlight}, or -1 if not
+	 *         registered
+	 */
+	public int getGauge(String name) {
+		IntSupplier gauge = gauges.get(name);
+		return gauge == null ? -1 : gauge.getAsInt();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(getClass().getSimpleName()).append(" [");
+		for(String method : getMethods()) {
+			builder.append("\n  ").append(method).append(": ").append(getCallCount(method)).append(" calls, ")
+					.append(getErrorCount(method)).append(" errors, p50 ").append(getLatencyPercentile(method, 50)
+							.toMillis()).append("ms, p99 ").append(getLatencyPercentile(method, 99).toMillis())
+					.append("ms");
+		}
+		for(String cache : getCaches()) {
+			builder.append("\n  ").append(cache).append(": ").append(getHits(cache)).append(" hits, ").append(
+					getMisses(cache)).append(" misses, ").append(getEvictions(cache)).append(" evictions");
+		}
+		for(String gauge : new TreeSet<>(gauges.keySet())) {
+			builder.append("\n  ").append(gauge).append(": ").append(getGauge(gauge));
+		}
+		return builder.append("\n]").toString();
+	}
+}
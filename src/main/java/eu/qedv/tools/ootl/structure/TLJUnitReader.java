@@ -0,0 +1,253 @@
+package eu.qedv.tools.ootl.structure;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.qedv.tools.ootl.exception.TestLinkException;
+
+/**
+ * Reads JUnit style XML reports (like the ones written by Surefire) with a
+ * streaming parser and emits one {@link TLTestResult} per {@code testcase}
+ * element, so memory is bounded by the largest test case instead of the whole
+ * report.
+ * <p>
+ * The test suites of a result are the names of the enclosing {@code testsuite}
+ * elements, or the parts of the {@code classname} attribute if there are none.
+ * Failures and errors are reported as {@code FAILURE} with the message as info
+ * and the element content as comment, skipped test cases as {@code SKIPPED}.
+ *
+ * @author dimasinger
+ *
+ */
+public final class TLJUnitReader {
+
+	private static final Log log = LogFactory.getLog(TLJUnitReader.class);
+
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    // thousands separated seconds like 1,234.5 or 1,234,567
+    private static final Pattern GROUPED_SECONDS = Pattern.compile("\\d{1,3}(,\\d{3})+\\.\\d*|\\d{1,3}(,\\d{3}){2,}");
+
+    private TLJUnitReader() {
+    }
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // reports are data, never resolve DTDs or external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Reads a report file
+     *
+     * @see #read(InputStream, Consumer)
+     */
+    public static void read(Path file, Consumer<? super TLTestResult> consumer) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            read(in, consumer);
+        } catch (IOException e) {
+            throw new TestLinkException("Failed to read JUnit report " + file, e);
+        }
+    }
+
+    /**
+     * Collects all results of a report, for small reports
+     */
+    public static List<TLTestResult> readAll(Path file) {
+        List<TLTestResult> results = new ArrayList<>();
+        read(file, results::add);
+        return results;
+    }
+
+    /**
+     * Reads a report, passing each test case to the consumer as soon as its
+     * element is complete
+     *
+     * @param in
+     *            the report, not closed by this method
+     * @param consumer
+     *            receives the results in document order
+     * @throws TestLinkException
+     *             if the report is not well-formed XML
+     */
+    public static void read(InputStream in, Consumer<? super TLTestResult> consumer) {
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(in);
+            Deque<String> suites = new ArrayDeque<>();
+            // timestamp per enclosing suite, inherited from the parent suite if missing
+            List<Date> timestamps = new ArrayList<>();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String element = reader.getLocalName();
+                    if ("testsuite".equals(element)) {
+                        suites.addLast(String.valueOf(reader.getAttributeValue(null, "name")));
+                        Date timestamp = parseTimestamp(reader.getAttributeValue(null, "timestamp"));
+                        timestamps.add(timestamp != null ? timestamp : last(timestamps));
+                    } else if ("testcase".equals(element)) {
+                        consumer.accept(readTestCase(reader, suites, last(timestamps)));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "testsuite".equals(reader.getLocalName())) {
+                    suites.removeLast();
+                    timestamps.remove(timestamps.size() - 1);
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new TestLinkException("Failed to parse JUnit report", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    log.debug("Failed to close JUnit report reader", e);
+                }
+            }
+        }
+    }
+
+    private static TLTestResult readTestCase(XMLStreamReader reader, Deque<String> suites, Date timestamp)
+            throws XMLStreamException {
+        TLTestResult result = new TLTestResult();
+        result.setName(reader.getAttributeValue(null, "name"));
+        result.setDuration(parseDuration(reader.getAttributeValue(null, "time")));
+        String classname = reader.getAttributeValue(null, "classname");
+        if (!suites.isEmpty()) {
+            result.setTestSuites(new ArrayList<>(suites));
+        } else if (classname != null) {
+            result.setTestSuites(Arrays.asList(classname.split("\\.")));
+        }
+        if (timestamp != null) {
+            result.setExecutionTime(timestamp);
+        }
+
+        ResultCode code = ResultCode.SUCCESS;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String element = reader.getLocalName();
+                if (depth == 1 && ("failure".equals(element) || "error".equals(element))) {
+                    code = ResultCode.FAILURE;
+                    result.setInfo(valueOrEmpty(reader.getAttributeValue(null, "message")));
+                    result.setComment(readText(reader));
+                } else if (depth == 1 && "skipped".equals(element)) {
+                    if (code != ResultCode.FAILURE) {
+                        code = ResultCode.SKIPPED;
+                        result.setInfo(valueOrEmpty(reader.getAttributeValue(null, "message")));
+                    }
+                    skipElement(reader);
+                } else {
+                    // system-out, system-err, properties and rerun elements are not kept
+                    skipElement(reader);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                --depth;
+            }
+        }
+        result.setResult(code);
+        return result;
+    }
+
+    /**
+     * Reads the text content of the current element including nested elements
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                ++depth;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                --depth;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                text.append(reader.getText());
+            }
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * Skips the current element without keeping its content
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                ++depth;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                --depth;
+            }
+        }
+    }
+
+    private static <T> T last(List<T> list) {
+        return list.isEmpty() ? null : list.get(list.size() - 1);
+    }
+
+    private static String valueOrEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static Duration parseDuration(String time) {
+        if (time == null || time.isEmpty()) {
+            return Duration.ZERO;
+        }
+        String value = time.trim();
+        if (GROUPED_SECONDS.matcher(value).matches()) {
+            // some writers use grouping separators for durations above 1000s
+            value = value.replace(",", "");
+        } else if (value.indexOf('.') < 0) {
+            // others write a decimal comma, like 0,5
+            value = value.replace(',', '.');
+        }
+        try {
+            BigDecimal seconds = new BigDecimal(value);
+            return Duration.ofNanos(seconds.movePointRight(9).longValue());
+        } catch (NumberFormatException | ArithmeticException e) {
+            log.debug("Ignoring invalid test case time '" + time + "'");
+            return Duration.ZERO;
+        }
+    }
+
+    private static Date parseTimestamp(String timestamp) {
+        if (timestamp == null || timestamp.isEmpty()) {
+            return null;
+        }
+        try {
+            return Date.from(LocalDateTime.parse(timestamp).atZone(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            log.debug("Ignoring invalid test suite timestamp '" + timestamp + "'");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package eu.qedv.tools.ootl.structure;
+
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionType;
+import br.eti.kinoshita.testlinkjavaapi.model.TestCaseStep;
+
+/**
+ * Read-only compact copy of a {@link TLTestStep} tree for very large results.
+ * <p>
+ * Steps are stored in breadth first order in parallel primitive arrays, so the
+ * children of a step are consecutive. Names, infos and comments are interned
+ * into a string table. The tree is accessed through flyweight
+ * {@code TLTestStep}s created on demand, which support all reading methods of
+ * {@code TLTestStep} and are equal to the steps they were copied from. The
+ * aggregates of every subtree (result, total duration, node count and hash
+ * code) are computed once when the tree is created; fingerprints and
+ * {@code toSteps} are computed directly on the arrays. Modifying methods throw
+ * {@link UnsupportedOperationException}.
+ *
+ * @author dimasinger
+ *
+ */
+public final class TLStepTree {
+
+    private static final ResultCode[] RESULT_CODES = ResultCode.values();
+
+    private final int size;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final int[] nameID;
+    private final int[] infoID;
+    private final int[] commentID;
+    // result set on the step as ResultCode ordinal, -1 if not set
+    private final byte[] result;
+    // result of the subtree as ResultCode ordinal
+    private final byte[] aggregateResult;
+    private final long[] durationNanos;
+    private final long[] totalNanos;
+    private final int[] nodeCount;
+    private final int[] hash;
+    private final int[] count;
+    private final String[] strings;
+
+    // the root of a TLTestResult
+    private final boolean testResult;
+    private final Date executionTime;
+    private final List<String> testSuites;
+
+    private TLStepTree(TLTestStep root) {
+        List<TLTestStep> order = new ArrayList<>();
+        order.add(root);
+        for (int i = 0; i < order.size(); ++i) {
+            order.addAll(order.get(i).getSteps());
+        }
+        size = order.size();
+        parent = new int[size];
+        firstChild = new int[size];
+        childCount = new int[size];
+        nameID = new int[size];
+        infoID = new int[size];
+        commentID = new int[size];
+        result = new byte[size];
+        aggregateResult = new byte[size];
+        durationNanos = new long[size];
+        totalNanos = new long[size];
+        nodeCount = new int[size];
+        hash = new int[size];
+        count = new int[size];
+
+        Map<String, Integer> table = new HashMap<>();
+        List<String> stringList = new ArrayList<>();
+        parent[0] = -1;
+        int next = 1;
+        for (int i = 0; i < size; ++i) {
+            TLTestStep step = order.get(i);
+            List<TLTestStep> children = step.getSteps();
+            firstChild[i] = next;
+            childCount[i] = children.size();
+            for (int c = 0; c < children.size(); ++c) {
+                parent[next + c] = i;
+            }
+            next += children.size();
+            nameID[i] = intern(table, stringList, step.getName());
+            infoID[i] = intern(table, stringList, step.getInfo());
+            commentID[i] = intern(table, stringList, step.getComment());
+            result[i] = (byte) (step.ownResult() == null ? -1 : step.ownResult().ordinal());
+            if (children.isEmpty()) {
+                aggregateResult[i] = (byte) step.getResult().ordinal();
+            }
+            durationNanos[i] = step.getDuration().toNanos();
+            count[i] = step.getCount();
+        }
+        strings = stringList.toArray(new String[0]);
+        // children come after their parent, so aggregates are computed bottom up
+        for (int i = size - 1; i >= 0; --i) {
+            aggregate(i);
+        }
+
+        testResult = root instanceof TLTestResult;
+        if (testResult) {
+            TLTestResult res = (TLTestResult) root;
+            executionTime = res.getExecutionTime();
+            testSuites = new ArrayList<>(res.getTestSuites());
+        } else {
+            executionTime = null;
+            testSuites = Collections.emptyList();
+        }
+    }
+
+    /**
+     * Creates a compact copy of a tree, after which the original tree can be
+     * released
+     */
+    public static TLStepTree of(TLTestStep root) {
+        return new TLStepTree(root);
+    }
+
+    private static int intern(Map<String, Integer> table, List<String> strings, String s) {
+        if (s == null)
+            return -1;
+        Integer id = table.get(s);
+        if (id == null) {
+            id = strings.size();
+            table.put(s, id);
+            strings.add(s);
+        }
+        return id;
+    }
+
+    private void aggregate(int index) {
+        int first = firstChild[index];
+        int end = first + childCount[index];
+        long total = childCount[index] == 0 ? durationNanos[index] : 0;
+        int nodes = 1;
+        int stepsHash = 1;
+        for (int c = first; c < end; ++c) {
+            total += totalNanos[c];
+            nodes += nodeCount[c];
+            stepsHash = 31 * stepsHash + hash[c];
+        }
+        if (childCount[index] > 0) {
+            aggregateResult[index] = (byte) computeResult(index).ordinal();
+        }
+        totalNanos[index] = total;
+        nodeCount[index] = nodes;
+        // same as TLTestStep.hashCode
+        String name = string(nameID[index]);
+        ResultCode own = ownResult(index);
+        int h = 1;
+        h = 31 * h + (name == null ? 0 : name.hashCode());
+        h = 31 * h + (own == null ? 0 : own.hashCode());
+        hash[index] = 31 * h + stepsHash;
+    }
+
+    private ResultCode ownResult(int index) {
+        return result[index] < 0 ? null : RESULT_CODES[result[index]];
+    }
+
+    private ResultCode computeResult(int index) {
+        ResultCode res = ResultCode.SUCCESS;
+        for (int c = firstChild[index], end = c + childCount[index]; c < end; ++c) {
+            ResultCode child = RESULT_CODES[aggregateResult[c]];
+            if (child == ResultCode.FAILURE || child == ResultCode.NOT_RUN)
+                return child;
+            if (child == ResultCode.SKIPPED)
+                res = ResultCode.SKIPPED;
+        }
+        return res;
+    }
+
+    private String string(int id) {
+        return id < 0 ? null : strings[id];
+    }
+
+    /*
+     * Getters
+     */
+
+    public TLTestStep getRoot() {
+        return new Node(0);
+    }
+
+    /**
+     * @return the number of steps in the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the test suites if the tree was copied from a {@link TLTestResult}
+     */
+    public List<String> getTestSuites() {
+        return Collections.unmodifiableList(testSuites);
+    }
+
+    /**
+     * Flyweight step reading from the arrays of the tree
+     */
+    private final class Node extends TLTestStep {
+
+        private final int index;
+
+        private Node(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public TLTestStep addStep(TLTestStep step) {
+            throw readOnly();
+        }
+
+        @Override
+        public List<TLTestStep> getSteps() {
+            final int first = firstChild[index];
+            final int n = childCount[index];
+            return new AbstractList<TLTestStep>() {
+                @Override
+                public TLTestStep get(int i) {
+                    if (i < 0 || i >= n)
+                        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + n);
+                    return new Node(first + i);
+                }
+
+                @Override
+                public int size() {
+                    return n;
+                }
+            };
+        }
+
+        @Override
+        List<TLTestStep> children() {
+            return getSteps();
+        }
+
+        @Override
+        ResultCode ownResult() {
+            return TLStepTree.this.ownResult(index);
+        }
+
+        @Override
+        public int steps() {
+            return childCount[index];
+        }
+
+        @Override
+        public TLTestStep getStep(int i) {
+            return getSteps().get(i);
+        }
+
+        @Override
+        public TLTestStep getParent() {
+            return parent[index] < 0 ? null : new Node(parent[index]);
+        }
+
+        @Override
+        public int getCount() {
+            return count[index];
+        }
+
+        @Override
+        public String getName() {
+            return string(nameID[index]);
+        }
+
+        @Override
+        public TLTestStep setName(String name) {
+            throw readOnly();
+        }
+
+        @Override
+        public String getInfo() {
+            return string(infoID[index]);
+        }
+
+        @Override
+        public TLTestStep setInfo(String info) {
+            throw readOnly();
+        }
+
+        @Override
+        public String getComment() {
+            return string(commentID[index]);
+        }
+
+        @Override
+        public void setComment(String comment) {
+            throw readOnly();
+        }
+
+        @Override
+        public Duration getDuration() {
+            return Duration.ofNanos(durationNanos[index]);
+        }
+
+        @Override
+        public TLTestStep setDuration(Duration duration) {
+            throw readOnly();
+        }
+
+        @Override
+        public Duration getTotalDuration() {
+            return Duration.ofNanos(totalNanos[index]);
+        }
+
+        @Override
+        public int getNodeCount() {
+            return nodeCount[index];
+        }
+
+        @Override
+        public Date getExecutionTime() {
+            if (!testResult)
+                throw new IllegalStateException("Test step has no parent to infer test type from!");
+            return executionTime == null ? null : new Date(executionTime.getTime());
+        }
+
+        @Override
+        public TLTestStep setResult(ResultCode result) {
+            throw readOnly();
+        }
+
+        @Override
+        public ResultCode getResult() {
+            return RESULT_CODES[aggregateResult[index]];
+        }
+
+        @Override
+        public void mergeSteps(boolean parallel) {
+            throw readOnly();
+        }
+
+        @Override
+        public long getFingerprint() {
+            long hash = FINGERPRINT_SEED;
+            for (int c = firstChild[index], end = c + childCount[index]; c < end; ++c) {
+                hash = hashStep(hash, string(nameID[c]), count[c]);
+            }
+            return finish(hash, childCount[index]);
+        }
+
+        @Override
+        public List<TestCaseStep> toSteps(int version) {
+            int n = childCount[index];
+            List<TestCaseStep> testCaseSteps = new ArrayList<>(n);
+            for (int i = 0; i < n; ++i) {
+                int c = firstChild[index] + i;
+                String formattedCount = count[c] == 1 ? "" : " (x" + count[c] + ")";
+                testCaseSteps.add(new TestCaseStep(i, version, i + 1, string(nameID[c]) + formattedCount, "", true,
+                        ExecutionType.AUTOMATED));
+            }
+            return testCaseSteps;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash[index];
+        }
+
+        private UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("Compact test steps are read-only");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [" + size + " steps, " + strings.length + " strings]";
+    }
+}
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -29,6 +30,18 @@ public class TLTestStep {
 
     private ResultCode result;
 
+    // minimum number of children to merge in parallel
+    private static final int PARALLEL_MERGE_THRESHOLD = 64;
+
+    // aggregates of the subtree, computed together on first use and invalidated
+    // up the parent chain whenever the subtree changes
+    private boolean aggregated = false;
+    private ResultCode aggregateResult;
+    private int aggregateHash;
+    private long fingerprint;
+    private Duration totalDuration;
+    private int nodeCount;
+
     public TLTestStep(TLTestStep parent) {
         this.parent = parent;
         steps = new ArrayList<>();
@@ -37,8 +50,24 @@ public class TLTestStep {
         }
     }
 
+    /**
+     * Creates a read-only step whose subclass keeps its children and aggregates
+     * elsewhere, without child storage
+     */
+    TLTestStep() {
+        steps = Collections.emptyList();
+    }
+
+    /**
+     * Adds a child step. A step without parent becomes a child of this step, a
+     * step must not be added to more than one parent.
+     */
     public TLTestStep addStep(TLTestStep step) {
+        if (step.parent == null) {
+            step.parent = this;
+        }
         steps.add(step);
+        invalidate();
         return this;
     }
 
@@ -58,6 +87,20 @@ public class TLTestStep {
         return parent;
     }
 
+    /**
+     * @return the children compared by {@link #equals}, without a read-only view
+     */
+    List<TLTestStep> children() {
+        return steps;
+    }
+
+    /**
+     * @return the result set on this step, null if it was not set
+     */
+    ResultCode ownResult() {
+        return result;
+    }
+
     public int getCount() {
         return count;
     }
@@ -68,6 +111,7 @@ public class TLTestStep {
 
     public TLTestStep setName(String name) {
         this.name = name;
+        invalidate();
         return this;
     }
 
@@ -94,9 +138,28 @@ public class TLTestStep {
 
     public TLTestStep setDuration(Duration duration) {
         this.duration = duration;
+        invalidate();
         return this;
     }
 
+    /**
+     * @return the duration of this step if it has no children, the sum of the
+     *         total durations of its children otherwise
+     */
+    public Duration getTotalDuration() {
+        aggregate();
+        return totalDuration;
+    }
+
+    /**
+     * @return the number of steps in the tree rooted at this step, including
+     *         this step
+     */
+    public int getNodeCount() {
+        aggregate();
+        return nodeCount;
+    }
+
     public Date getExecutionTime() {
         if (parent == null) {
             throw new IllegalStateException("Test step has no parent to infer test type from!");
@@ -106,54 +169,137 @@ public class TLTestStep {
 
     public TLTestStep setResult(ResultCode result) {
         this.result = result;
+        invalidate();
         return this;
     }
 
     public ResultCode getResult() {
-        if (steps.isEmpty()) {
-            return result == null ? ResultCode.NOT_RUN : result;
+        aggregate();
+        return aggregateResult;
+    }
+
+    private void invalidate() {
+        aggregated = false;
+        // ancestors of a step without aggregates have none either
+        for (TLTestStep step = parent; step != null && step.aggregated; step = step.parent) {
+            step.aggregated = false;
         }
-        ResultCode res = ResultCode.SUCCESS;
+    }
+
+    private void aggregate() {
+        if (aggregated) {
+            return;
+        }
+        ResultCode res = steps.isEmpty() ? (result == null ? ResultCode.NOT_RUN : result) : ResultCode.SUCCESS;
+        boolean decided = steps.isEmpty();
+        int stepsHash = 1;
+        long stepsFingerprint = FINGERPRINT_SEED;
+        Duration total = steps.isEmpty() ? duration : Duration.ZERO;
+        int nodes = 1;
         for (TLTestStep step : steps) {
-            switch(step.getResult()) {
-            case FAILURE:
-                return ResultCode.FAILURE;
-            case NOT_RUN:
-                return ResultCode.NOT_RUN;
-            case SKIPPED:
-                res = ResultCode.SKIPPED;
-                break;
-            default:
+            step.aggregate();
+            if (!decided) {
+                // the first failed or not run step decides the result
+                switch(step.aggregateResult) {
+                case FAILURE:
+                case NOT_RUN:
+                    res = step.aggregateResult;
+                    decided = true;
+                    break;
+                case SKIPPED:
+                    res = ResultCode.SKIPPED;
+                    break;
+                default:
+                }
             }
+            stepsHash = 31 * stepsHash + step.aggregateHash;
+            stepsFingerprint = hashStep(stepsFingerprint, step.name, step.count);
+            total = total.plus(step.totalDuration);
+            nodes += step.nodeCount;
         }
-        return res;
+        final int prime = 31;
+        int hash = 1;
+        hash = prime * hash + ((name == null) ? 0 : name.hashCode());
+        hash = prime * hash + ((result == null) ? 0 : result.hashCode());
+        hash = prime * hash + stepsHash;
+
+        aggregateResult = res;
+        aggregateHash = hash;
+        fingerprint = finish(stepsFingerprint, steps.size());
+        totalDuration = total;
+        nodeCount = nodes;
+        aggregated = true;
     }
 
     public ExecutionStatus getStatus() {
         return getResult().toExecutionStatus();
     }
 
+    /**
+     * Merges runs of equal sibling steps in the whole tree into one step with
+     * the summed count and duration
+     */
     public void mergeSteps() {
+        mergeSteps(false);
+    }
+
+    /**
+     * Merges runs of equal sibling steps in the whole tree into one step with
+     * the summed count and duration
+     * 
+     * @param parallel
+     *            whether the children of wide steps are merged in parallel
+     */
+    public void mergeSteps(boolean parallel) {
+        if (merge(parallel)) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Merges the subtree without invalidating ancestors, so subtrees can be
+     * merged concurrently. Steps in the subtree that changed are marked.
+     * 
+     * @return true if anything in the subtree changed
+     */
+    private boolean merge(boolean parallel) {
         if (steps.isEmpty()) {
-            return;
+            return false;
         }
-        for (TLTestStep step : steps) {
-            step.mergeSteps();
+        boolean changed;
+        if (parallel && steps.size() >= PARALLEL_MERGE_THRESHOLD) {
+            changed = steps.parallelStream().map(step -> step.merge(true)).reduce(false, Boolean::logicalOr);
+        } else {
+            changed = false;
+            for (TLTestStep step : steps) {
+                changed |= step.merge(parallel);
+            }
         }
+        // compacts in place, equals rejects on the memoized hash codes first
+        int size = steps.size();
         int m = 0;
         TLTestStep merging = steps.get(0);
-        while (m < steps.size() - 1) {
-            TLTestStep next = steps.get(m + 1);
+        for (int i = 1; i < size; ++i) {
+            TLTestStep next = steps.get(i);
             if (merging.equals(next)) {
                 merging.count += next.count;
                 merging.duration = merging.duration.plus(next.duration);
-                steps.remove(m + 1);
+                merging.aggregated = false;
             } else {
-                merging = steps.get(++m);
+                merging = next;
+                steps.set(++m, next);
             }
         }
+        if (m + 1 < size) {
+            steps.subList(m + 1, size).clear();
+            changed = true;
+        }
+        if (changed) {
+            aggregated = false;
+        }
+        return changed;
     }
-    
+
     public List<TestCaseStep> toSteps(int version) {
         List<TestCaseStep> testCaseSteps = new ArrayList<>();
         int i = 0;
@@ -165,6 +311,92 @@ public class TLTestStep {
         return testCaseSteps;
     }
     
+    /**
+     * Computes a fingerprint of the test case steps derived from this step, equal
+     * to {@code fingerprint(toSteps(version))} for any version but without
+     * creating the steps.
+     * 
+     * @return a 64 bit hash of the names and counts of the child steps
+     */
+    public long getFingerprint() {
+        aggregate();
+        return fingerprint;
+    }
+
+    static long hashStep(long hash, String name, int count) {
+        String stepName = String.valueOf(name);
+        if (count == 1) {
+            hash = hash(hash, stepName.length());
+            hash = hash(hash, stepName);
+        } else {
+            // the name followed by " (x<count>)" like in toSteps
+            hash = hash(hash, stepName.length() + 4 + digits(count));
+            hash = hash(hash, stepName);
+            hash = hash(hash, " (x");
+            hash = hashDigits(hash, count);
+            hash = hash(hash, ")");
+        }
+        return hash(hash, 0);
+    }
+
+    /**
+     * Computes the fingerprint of test case steps as stored in testlink, to be
+     * compared with {@link #getFingerprint()}
+     */
+    public static long fingerprint(List<TestCaseStep> testCaseSteps) {
+        long hash = FINGERPRINT_SEED;
+        for (TestCaseStep step : testCaseSteps) {
+            String actions = String.valueOf(step.getActions());
+            String expected = String.valueOf(step.getExpectedResults());
+            hash = hash(hash, actions.length());
+            hash = hash(hash, actions);
+            hash = hash(hash, expected.length());
+            hash = hash(hash, expected);
+        }
+        return finish(hash, testCaseSteps.size());
+    }
+
+    // FNV-1a over chars and lengths, finished with the murmur3 mixer
+    static final long FINGERPRINT_SEED = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long hash(long hash, int value) {
+        hash = (hash ^ (value & 0xffff)) * FNV_PRIME;
+        return (hash ^ (value >>> 16)) * FNV_PRIME;
+    }
+
+    private static long hash(long hash, String s) {
+        for (int i = 0; i < s.length(); ++i) {
+            hash = (hash ^ s.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    // counts are positive
+    private static long hashDigits(long hash, int value) {
+        if (value >= 10) {
+            hash = hashDigits(hash, value / 10);
+        }
+        return (hash ^ ('0' + value % 10)) * FNV_PRIME;
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        for (; value >= 10; value /= 10) {
+            ++digits;
+        }
+        return digits;
+    }
+
+    static long finish(long hash, int steps) {
+        hash ^= steps;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -174,25 +406,27 @@ public class TLTestStep {
             return false;
         }
         TLTestStep other = (TLTestStep) obj;
-        boolean nameEqual = (name == null ? other.name == null : name.equals(other.name));
-        return nameEqual && result == other.result && steps.equals(other.steps);
+        if (hashCode() != other.hashCode()) {
+            return false;
+        }
+        // accessors, so compact steps compare equal to the steps they were copied from
+        return Objects.equals(getName(), other.getName()) && ownResult() == other.ownResult()
+                && children().equals(other.children());
     }
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int hash = 1;
-        hash = prime * hash + ((name == null) ? 0 : name.hashCode());
-        hash = prime * hash + ((result == null) ? 0 : result.hashCode());
-        hash = prime * hash + ((steps == null) ? 0 : steps.hashCode());
-        return hash;
+        aggregate();
+        return aggregateHash;
     }
 
     public String getFormattedCount(String pre, String post) {
+        int count = getCount();
         return count == 1 ? "" : pre + count + post;
     }
     
     public String getFormattedDuration() {
+        Duration duration = getDuration();
         if (duration.getSeconds() == 0)
             return duration.toMillis() + "ms";
         long h = duration.toHours();
@@ -214,7 +448,7 @@ public class TLTestStep {
     private void dump(String pre) {
         log.debug(pre + toString());
         String newPre = pre + "  ";
-        for (TLTestStep step : steps) {
+        for (TLTestStep step : getSteps()) {
             step.dump(newPre);
         }
     }
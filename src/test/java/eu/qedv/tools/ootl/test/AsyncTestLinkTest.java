@@ -0,0 +1,82 @@
+package eu.qedv.tools.ootl.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import br.eti.kinoshita.testlinkjavaapi.TestLinkAPI;
+import eu.qedv.tools.ootl.TestLink;
+import eu.qedv.tools.ootl.TestLinkConfig;
+import eu.qedv.tools.ootl.async.AsyncTLBuild;
+import eu.qedv.tools.ootl.async.AsyncTLTestCase;
+import eu.qedv.tools.ootl.async.AsyncTLTestProject;
+import eu.qedv.tools.ootl.async.AsyncTLTestSuite;
+import eu.qedv.tools.ootl.async.AsyncTestLink;
+import eu.qedv.tools.ootl.exception.MissingPermissionException;
+import eu.qedv.tools.ootl.structure.ResultCode;
+import eu.qedv.tools.ootl.test.util.EmptyOptionalError;
+import eu.qedv.tools.ootl.test.util.TJAUtil;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AsyncTestLinkTest {
+
+	@Mock
+	TestLinkAPI api;
+
+	@Test
+	void testAsyncNavigation() throws Exception {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockSuites(api, 1, "deep");
+
+		AsyncTestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester").async();
+		AsyncTLTestProject project = testlink.getTestProject("project").get().orElseThrow(EmptyOptionalError::new);
+
+		List<CompletableFuture<AsyncTLTestSuite>> lookups = project.getFirstLevelTestSuites().get().stream().map(
+				s -> project.getTestSuiteByPath(s.getName()).thenApply(o -> o.orElseThrow(EmptyOptionalError::new)))
+				.collect(Collectors.toList());
+		CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])).get();
+		assertThat(lookups.stream().map(f -> f.join().getName()).collect(Collectors.toList())).containsExactly("A",
+				"B", "C", "D");
+
+		AsyncTLTestSuite deep = project.getTestSuiteByPath("C/Child 1/Superchild/Test").get().orElseThrow(
+				EmptyOptionalError::new);
+		assertThat(deep.getID()).isEqualTo(17);
+		assertThat(deep.sync()).isSameAs(testlink.sync().getTestProject("project").orElseThrow(
+				EmptyOptionalError::new).getTestSuiteByPath("C/Child 1/Superchild/Test").orElseThrow(
+						EmptyOptionalError::new));
+		verify(api, times(1)).getFirstLevelTestSuitesForTestProject(anyInt());
+	}
+
+	@Test
+	void testAsyncExecute() throws Exception {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "single");
+
+		AsyncTestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester").async();
+		AsyncTLTestProject project = testlink.getTestProject("project").get().orElseThrow(EmptyOptionalError::new);
+		AsyncTLBuild build = project.getBuild("plan", "build").get().orElseThrow(EmptyOptionalError::new);
+		AsyncTLTestCase testcase = project.getFirstLevelTestSuite("suite").thenCompose(s -> s.orElseThrow(
+				EmptyOptionalError::new).getTestCase("testcase")).get().orElseThrow(EmptyOptionalError::new);
+
+		assertThat(testcase.execute(build, ResultCode.SUCCESS, "").get()).isFalse();
+		assertThatThrownBy(() -> project.createBuild("plan", "new").get()).isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(MissingPermissionException.class);
+	}
+}
@@ -3,6 +3,18 @@ package eu.qedv.tools.ootl.test;
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -12,9 +24,14 @@ import org.mockito.quality.Strictness;
 
 import br.eti.kinoshita.testlinkjavaapi.TestLinkAPI;
 import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+import br.eti.kinoshita.testlinkjavaapi.constants.TestCaseDetails;
+import br.eti.kinoshita.testlinkjavaapi.model.TestCase;
 import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
+import eu.qedv.tools.ootl.CachePolicy;
 import eu.qedv.tools.ootl.TLBuild;
 import eu.qedv.tools.ootl.TLExecution;
+import eu.qedv.tools.ootl.TLExecutionReport;
+import eu.qedv.tools.ootl.TLExecutionRequest;
 import eu.qedv.tools.ootl.TLTestCase;
 import eu.qedv.tools.ootl.TLTestProject;
 import eu.qedv.tools.ootl.TLTestSuite;
@@ -52,6 +69,45 @@ public class TLBuildTest {
 		assertThat(execution.getBuild()).isSameAs(build);
 	}
 
+	@Test
+	void testGetLastExecutionAfterExecute() throws Exception {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "single");
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+		when(api.getLastExecutionResult(eq(10), eq(1), anyInt())).thenAnswer(invocation -> {
+			if(calls.incrementAndGet() > 1) return TJAUtil.getExecution(121, 10, 100, ExecutionStatus.FAILED);
+			// the first load reads the execution before the test case is executed again
+			started.countDown();
+			release.await();
+			return TJAUtil.getExecution(120, 10, 100, ExecutionStatus.PASSED);
+		});
+
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLBuild build = project.getBuild("plan", "build").orElseThrow(EmptyOptionalError::new);
+		TLTestCase testcase = project.getFirstLevelTestSuite("suite").flatMap(s -> s.getTestCase("testcase"))
+				.orElseThrow(EmptyOptionalError::new);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Optional<TLExecution>> before = executor.submit(() -> build.getLastExecution(testcase));
+			started.await();
+			assertThat(testcase.execute(build, ResultCode.FAILURE, "")).isTrue();
+			Future<Optional<TLExecution>> after = executor.submit(() -> build.getLastExecution(testcase));
+			assertThat(after.get(5, TimeUnit.SECONDS).map(TLExecution::getExecutionResult)).contains(ResultCode.FAILURE);
+			release.countDown();
+			assertThat(before.get(5, TimeUnit.SECONDS).map(TLExecution::getExecutionResult)).contains(ResultCode.SUCCESS);
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+		verify(api, times(2)).getLastExecutionResult(eq(10), eq(1), anyInt());
+	}
+
 	@Test
 	void testGetLastExecutionFailure() {
 		TJAUtil.mockBasicProject(api);
@@ -68,4 +124,206 @@ public class TLBuildTest {
 		
 		assertThatThrownBy(() -> build.getLastExecution(testcase)).isInstanceOf(TestLinkException.class);
 	}
+
+	@Test
+	void testExecuteAll() {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "basic");
+		when(api.setTestCaseExecutionResult(anyInt(), anyInt(), eq(10), any(ExecutionStatus.class), eq(100), anyString(),
+				eq("broken"), anyBoolean(), anyString(), anyInt(), anyString(), any(), anyBoolean())).thenThrow(
+						new TestLinkAPIException("broken"));
+
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLBuild build = project.getBuild("plan", "build").orElseThrow(EmptyOptionalError::new);
+		TLTestSuite suite = project.getFirstLevelTestSuite("suite").orElseThrow(EmptyOptionalError::new);
+
+		List<TLExecutionRequest> requests = suite.getTestCases().stream().map(tc -> new TLExecutionRequest(tc,
+				ResultCode.SUCCESS, tc.getName().equals("A") ? "broken" : "")).collect(Collectors.toList());
+		TLExecutionReport report = build.executeAll(requests, 3);
+
+		assertThat(report.getRequests()).containsExactlyElementsOf(requests);
+		assertThat(report.getExecuted().size()).isEqualTo(3);
+		assertThat(report.getFailed().size()).isEqualTo(1);
+		assertThat(report.getFailed().get(0).getTestcase().getName()).isEqualTo("A");
+		assertThat(report.isSuccess()).isFalse();
+		verify(api, times(4)).addTestCaseToTestPlan(anyInt(), eq(10), anyInt(), anyInt(), anyInt(), anyInt(), anyInt());
+	}
+
+	@Test
+	void testExecuteAllDuplicateRequests() {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "single");
+		when(api.setTestCaseExecutionResult(anyInt(), anyInt(), eq(10), any(ExecutionStatus.class), eq(100), anyString(),
+				anyString(), anyBoolean(), anyString(), anyInt(), anyString(), any(), anyBoolean())).thenThrow(
+						new TestLinkAPIException("broken"));
+
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLBuild build = project.getBuild("plan", "build").orElseThrow(EmptyOptionalError::new);
+		TLTestCase testcase = project.getTestSuiteByPath("suite").flatMap(s -> s.getTestCase("testcase"))
+				.orElseThrow(EmptyOptionalError::new);
+
+		TLExecutionRequest request = new TLExecutionRequest(testcase, ResultCode.SUCCESS, "");
+		TLExecutionReport report = build.executeAll(Arrays.asList(request, request), 2);
+
+		assertThat(report.getRequests()).containsExactly(request, request);
+		assertThat(report.getFailed()).containsExactly(request, request);
+		assertThat(report.isExecuted(1)).isFalse();
+		assertThat(report.isExecuted(request)).isFalse();
+	}
+
+	@Test
+	void testAddTestcaseToTestPlanIndex() {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "single");
+
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLBuild build = project.getBuild("plan", "build").orElseThrow(EmptyOptionalError::new);
+		TLTestCase testcase = project.getFirstLevelTestSuite("suite").orElseThrow(EmptyOptionalError::new)
+				.getTestCase("testcase").orElseThrow(EmptyOptionalError::new);
+
+		assertThat(testcase.execute(build, ResultCode.SUCCESS, "")).isTrue();
+		assertThat(testcase.execute(build, ResultCode.FAILURE, "")).isTrue();
+		assertThat(build.addTestcaseToTestPlan(testcase)).isEqualTo(1);
+		verify(api, times(1)).addTestCaseToTestPlan(anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(),
+				anyInt());
+		verify(api, times(2)).setTestCaseExecutionResult(anyInt(), anyInt(), eq(10), any(ExecutionStatus.class), eq(
+				100), anyString(), anyString(), anyBoolean(), anyString(), anyInt(), anyString(), any(), anyBoolean());
+	}
+
+	@Test
+	void testAddTestcaseToTestPlanAlreadyLinked() {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "single");
+		when(api.addTestCaseToTestPlan(anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt()))
+				.thenThrow(new TestLinkAPIException(
+						"Test Case version number 3 <> 1 (requested version) is already linked to Test Plan plan"));
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLBuild build = project.getBuild("plan", "build").orElseThrow(EmptyOptionalError::new);
+		TLTestCase testcase = project.getFirstLevelTestSuite("suite").orElseThrow(EmptyOptionalError::new)
+				.getTestCase("testcase").orElseThrow(EmptyOptionalError::new);
+
+		assertThat(build.addTestcaseToTestPlan(testcase)).isEqualTo(3);
+		assertThat(build.addTestcaseToTestPlan(testcase)).isEqualTo(3);
+		verify(api, times(1)).addTestCaseToTestPlan(anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(),
+				anyInt());
+	}
+
+	@Test
+	void testExecuteSimpleTestCaseDetails() {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TestCase simple = new TestCase();
+		simple.setId(1);
+		simple.setName("testcase");
+		simple.setVersion(2);
+		when(api.getTestCasesForTestSuite(anyInt(), anyBoolean(), eq(TestCaseDetails.SIMPLE))).thenReturn(
+				new TestCase[] { simple });
+		when(api.addTestCaseToTestPlan(anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt()))
+				.thenThrow(new TestLinkAPIException(
+						"Test Case version number 1 <> 2 (requested version) is already linked to Test Plan plan"));
+
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, true, false, false, CachePolicy.UNBOUNDED,
+				TestCaseDetails.SIMPLE), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLBuild build = project.getBuild("plan", "build").orElseThrow(EmptyOptionalError::new);
+		TLTestCase testcase = project.getFirstLevelTestSuite("suite").orElseThrow(EmptyOptionalError::new)
+				.getTestCase("testcase").orElseThrow(EmptyOptionalError::new);
+
+		// the version comes with the suite's test cases, summary and steps are not needed
+		assertThat(testcase.execute(build, ResultCode.SUCCESS, "notes")).isTrue();
+		assertThat(testcase.execute(build, ResultCode.SUCCESS, "notes")).isTrue();
+		verify(api, never()).getTestCase(anyInt(), any(), any());
+		verify(api, times(1)).addTestCaseToTestPlan(anyInt(), eq(10), eq(1), eq(2), anyInt(), anyInt(), anyInt());
+		verify(api, times(2)).setTestCaseExecutionResult(eq(1), anyInt(), eq(10), eq(ExecutionStatus.PASSED), eq(100),
+				anyString(), contains("Actual executed version: 2"), anyBoolean(), anyString(), anyInt(), anyString(),
+				any(), anyBoolean());
+	}
+
+	@Test
+	void testGetLastExecutions() {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "basic");
+		when(api.getLastExecutionResult(eq(10), anyInt(), anyInt())).thenAnswer(inv -> {
+			int id = inv.getArgument(1);
+			return id == 4 ? null : TJAUtil.getExecution(id, 10, id == 3 ? 101 : 100, ExecutionStatus.PASSED);
+		});
+
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLBuild build = project.getBuild("plan", "build").orElseThrow(EmptyOptionalError::new);
+		List<TLTestCase> testcases = project.getFirstLevelTestSuite("suite").orElseThrow(EmptyOptionalError::new)
+				.getTestCases();
+
+		Map<TLTestCase, TLExecution> executions = build.getLastExecutions(testcases);
+		assertThat(executions.keySet()).containsExactly(testcases.get(0), testcases.get(1));
+		assertThat(executions.get(testcases.get(1)).getExecutionResult()).isEqualTo(ResultCode.SUCCESS);
+		verify(api, times(4)).getLastExecutionResult(eq(10), anyInt(), anyInt());
+
+		// only the execution made through this client was cached
+		assertThat(testcases.get(2).execute(build, ResultCode.FAILURE, "")).isTrue();
+		executions = build.getLastExecutions(testcases, 2, true);
+		assertThat(executions.keySet()).containsExactly(testcases.get(0), testcases.get(1), testcases.get(2));
+		assertThat(executions.get(testcases.get(2)).getExecutionResult()).isEqualTo(ResultCode.FAILURE);
+		verify(api, times(7)).getLastExecutionResult(eq(10), anyInt(), anyInt());
+
+		executions = build.getLastExecutions(testcases, 2, true);
+		assertThat(executions).hasSize(3);
+		verify(api, times(7)).getLastExecutionResult(eq(10), anyInt(), anyInt());
+	}
+
+	@Test
+	void testGetLastExecutionsAfterExecute() throws Exception {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "single");
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(api.getLastExecutionResult(eq(10), eq(1), anyInt())).thenAnswer(invocation -> {
+			// the load reads the execution before the test case is executed again
+			started.countDown();
+			release.await();
+			return TJAUtil.getExecution(120, 10, 100, ExecutionStatus.PASSED);
+		});
+
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLBuild build = project.getBuild("plan", "build").orElseThrow(EmptyOptionalError::new);
+		List<TLTestCase> testcases = project.getFirstLevelTestSuite("suite").orElseThrow(EmptyOptionalError::new)
+				.getTestCases();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Map<TLTestCase, TLExecution>> loading = executor.submit(() -> build.getLastExecutions(testcases, 1,
+					true));
+			started.await();
+			assertThat(testcases.get(0).execute(build, ResultCode.FAILURE, "")).isTrue();
+			release.countDown();
+			assertThat(loading.get(5, TimeUnit.SECONDS).get(testcases.get(0)).getExecutionResult()).isEqualTo(
+					ResultCode.FAILURE);
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+		// the recorded execution was not overwritten by the older one loaded
+		assertThat(build.getLastExecutions(testcases, 1, true).get(testcases.get(0)).getExecutionResult()).isEqualTo(
+				ResultCode.FAILURE);
+		verify(api, times(1)).getLastExecutionResult(eq(10), eq(1), anyInt());
+	}
 }
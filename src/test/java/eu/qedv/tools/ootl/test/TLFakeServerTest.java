@@ -0,0 +1,164 @@
+package eu.qedv.tools.ootl.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
+import eu.qedv.tools.ootl.TLBuild;
+import eu.qedv.tools.ootl.TLCreationReport;
+import eu.qedv.tools.ootl.TLExecution;
+import eu.qedv.tools.ootl.TLExecutionReport;
+import eu.qedv.tools.ootl.TLExecutionRequest;
+import eu.qedv.tools.ootl.TLTestCase;
+import eu.qedv.tools.ootl.TLTestCaseRequest;
+import eu.qedv.tools.ootl.TLTestProject;
+import eu.qedv.tools.ootl.TLTestSuite;
+import eu.qedv.tools.ootl.TestLink;
+import eu.qedv.tools.ootl.TestLinkConfig;
+import eu.qedv.tools.ootl.exception.MissingPermissionException;
+import eu.qedv.tools.ootl.metrics.TLMetricsRegistry;
+import eu.qedv.tools.ootl.structure.ResultCode;
+import eu.qedv.tools.ootl.structure.TLTestStep;
+import eu.qedv.tools.ootl.test.server.TLFakeServer;
+import eu.qedv.tools.ootl.test.util.EmptyOptionalError;
+
+class TLFakeServerTest {
+
+	TLFakeServer server;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = new TLFakeServer("key");
+		server.addTestProject("project", "PRJ");
+		server.addTestSuite("project", "first", "second");
+		server.addTestPlan("project", "plan");
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.close();
+	}
+
+	TestLink connect() {
+		return new TestLink(TestLinkConfig.ALL_PERMISSIONS, server.getURL(), "key", "tester");
+	}
+
+	static TLTestStep result() {
+		TLTestStep result = new TLTestStep(null).setResult(ResultCode.SUCCESS);
+		new TLTestStep(result).setName("first step").setResult(ResultCode.SUCCESS);
+		new TLTestStep(result).setName("second step").setResult(ResultCode.SUCCESS);
+		return result;
+	}
+
+	@Test
+	void testEndToEnd() {
+		TLTestProject project = connect().getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLTestSuite suite = project.getTestSuiteByPath("first/second").orElseThrow(EmptyOptionalError::new);
+		TLTestCase testcase = suite.createTestCase("testcase", "summary", result());
+		TLBuild build = project.getOrCreateBuild("plan", "build");
+		assertThat(testcase.execute(build, ResultCode.FAILURE, "notes")).isTrue();
+
+		// a new connection sees everything on the server
+		project = connect().getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		testcase = project.getTestSuiteByPath("first/second").flatMap(s -> s.getTestCase("testcase")).orElseThrow(
+				EmptyOptionalError::new);
+		assertThat(testcase.getVersion()).isEqualTo(1);
+		build = project.getBuild("plan", "build").orElseThrow(EmptyOptionalError::new);
+		TLExecution execution = build.getLastExecution(testcase).orElseThrow(EmptyOptionalError::new);
+		assertThat(execution.getExecutionResult()).isEqualTo(ResultCode.FAILURE);
+		assertThat(execution.getExecutionNotes()).isEqualTo("notes");
+		assertThat(server.getExecutionCount()).isEqualTo(1);
+	}
+
+	@Test
+	void testConcurrentExecutions() {
+		TLTestProject project = connect().getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLTestSuite suite = project.getTestSuiteByPath("first/second").orElseThrow(EmptyOptionalError::new);
+		List<TLExecutionRequest> requests = new ArrayList<>();
+		for(int i = 0; i < 20; ++i) {
+			TLTestCase testcase = suite.createTestCase("testcase" + i, "summary", result());
+			requests.add(new TLExecutionRequest(testcase, ResultCode.SUCCESS, "run " + i));
+		}
+		TLBuild build = project.getOrCreateBuild("plan", "build");
+
+		TLExecutionReport report = build.executeAll(requests, 8);
+		assertThat(report.getFailed()).isEmpty();
+		assertThat(server.getExecutionCount()).isEqualTo(20);
+		assertThat(server.getRequestCount("tl.addTestCaseToTestPlan")).isEqualTo(20);
+	}
+
+	@Test
+	void testInjectedErrors() {
+		server.addTestProject("other", "OTH");
+		TestLink tl = connect();
+		TLMetricsRegistry metrics = new TLMetricsRegistry();
+		tl.setMetrics(metrics);
+		int limit = tl.getLimiter().getLimit();
+		server.setErrorRate(1);
+
+		// not cached as missing, testlink did not answer
+		assertThatThrownBy(() -> tl.getTestProject("project")).isInstanceOf(TestLinkAPIException.class);
+		assertThat(metrics.getErrorCount("getTestProjectByName")).isEqualTo(1);
+		assertThat(tl.getLimiter().getLimit()).isLessThan(limit);
+
+		server.setErrorRate(0);
+		assertThat(tl.getTestProject("other").isPresent()).isTrue();
+		assertThat(tl.getTestProject("project").isPresent()).isTrue();
+	}
+
+	@Test
+	void testBulkCreation() {
+		TLTestProject project = connect().getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		// cached as missing before the suites are created
+		assertThat(project.getTestSuiteByPath("new/area/x").isPresent()).isFalse();
+
+		String[] paths = { "new/area/x", "new/area/y", "first/second", "first/third" };
+		List<TLTestCaseRequest> requests = new ArrayList<>();
+		for(int i = 0; i < 40; ++i) {
+			requests.add(new TLTestCaseRequest(paths[i % paths.length], "testcase" + i, "summary", result()));
+		}
+		TLCreationReport report = project.createTestCases(requests, 8);
+		assertThat(report.isSuccess()).isTrue();
+		assertThat(report.getCreated()).hasSize(40);
+		// new, new/area, new/area/x, new/area/y and first/third
+		assertThat(server.getRequestCount("tl.createTestSuite")).isEqualTo(5);
+		assertThat(server.getRequestCount("tl.createTestCase")).isEqualTo(40);
+
+		long before = server.getRequestCount();
+		for(TLTestCaseRequest request : requests) {
+			TLTestCase testcase = project.getTestSuiteByPath(request.getTestSuitePath()).flatMap(s -> s.getTestCase(
+					request.getTestCaseName())).orElseThrow(EmptyOptionalError::new);
+			assertThat(report.getTestCase(request)).contains(testcase);
+		}
+		assertThat(project.getTestSuiteByPath("new/area").map(s -> s.getTestSuites().size())).contains(2);
+		assertThat(server.getRequestCount()).isEqualTo(before);
+
+		// a new connection sees everything on the server
+		project = connect().getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		assertThat(project.getTestSuiteByPath("new/area/y").map(s -> s.getTestCases().size())).contains(10);
+	}
+
+	@Test
+	void testBulkCreationFailedSuite() {
+		TestLink tl = new TestLink(new TestLinkConfig(true, false, false, false, false), server.getURL(), "key",
+				"tester");
+		TLTestProject project = tl.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLTestCaseRequest existing = new TLTestCaseRequest("first/second", "testcase", "summary", result());
+		TLTestCaseRequest missing = new TLTestCaseRequest("first/missing", "testcase", "summary", result());
+
+		TLCreationReport report = project.createTestCases(Arrays.asList(existing, missing), 2);
+		assertThat(report.getCreated()).containsExactly(existing);
+		assertThat(report.getFailed()).containsExactly(missing);
+		assertThat(report.getError(missing).get()).isInstanceOf(MissingPermissionException.class);
+		assertThat(server.getRequestCount("tl.createTestCase")).isEqualTo(1);
+	}
+}
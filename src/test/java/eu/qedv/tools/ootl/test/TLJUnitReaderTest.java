@@ -0,0 +1,79 @@
+package eu.qedv.tools.ootl.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import eu.qedv.tools.ootl.exception.TestLinkException;
+import eu.qedv.tools.ootl.structure.ResultCode;
+import eu.qedv.tools.ootl.structure.TLJUnitReader;
+import eu.qedv.tools.ootl.structure.TLTestResult;
+
+class TLJUnitReaderTest {
+
+	@Test
+	void testRead() throws URISyntaxException {
+		Path report = Paths.get(getClass().getResource("/junit/TEST-report.xml").toURI());
+		List<TLTestResult> results = TLJUnitReader.readAll(report);
+		assertThat(results).extracting(TLTestResult::getName).containsExactly("passes", "fails", "skipped", "errors",
+				"loose");
+
+		TLTestResult passes = results.get(0);
+		assertThat(passes.getResult()).isEqualTo(ResultCode.SUCCESS);
+		assertThat(passes.getDuration()).isEqualTo(Duration.ofMillis(12));
+		assertThat(passes.getTestSuites()).containsExactly("eu.qedv.Outer");
+		assertThat(passes.getExecutionTime()).isNotNull();
+
+		TLTestResult fails = results.get(1);
+		assertThat(fails.getResult()).isEqualTo(ResultCode.FAILURE);
+		assertThat(fails.getDuration()).isEqualTo(Duration.ofMillis(1234500));
+		assertThat(fails.getInfo()).isEqualTo("expected 1");
+		assertThat(fails.getComment()).startsWith("java.lang.AssertionError: expected 1").contains("Outer.java:12");
+
+		TLTestResult skipped = results.get(2);
+		assertThat(skipped.getResult()).isEqualTo(ResultCode.SKIPPED);
+		assertThat(skipped.getTestSuites()).containsExactly("eu.qedv.Outer", "Inner");
+		assertThat(skipped.getExecutionTime()).isEqualTo(passes.getExecutionTime());
+
+		assertThat(results.get(3).getResult()).isEqualTo(ResultCode.FAILURE);
+		assertThat(results.get(3).getDuration()).isEqualTo(Duration.ZERO);
+
+		TLTestResult loose = results.get(4);
+		assertThat(loose.getTestSuites()).isEqualTo(Arrays.asList("eu", "qedv", "Loose"));
+		assertThat(loose.getExecutionTime()).isNull();
+	}
+
+	@Test
+	void testDurationSeparators() {
+		List<TLTestResult> results = new ArrayList<>();
+		byte[] report = ("<testsuite name=\"s\"><testcase name=\"decimal\" time=\"0,5\"/>"
+				+ "<testcase name=\"grouped\" time=\"1,234.5\"/><testcase name=\"groups\" time=\"1,234,567\"/>"
+				+ "<testcase name=\"both\" time=\"1,5,7\"/></testsuite>").getBytes(StandardCharsets.UTF_8);
+		TLJUnitReader.read(new ByteArrayInputStream(report), results::add);
+		assertThat(results).extracting(TLTestResult::getDuration).containsExactly(Duration.ofMillis(500), Duration
+				.ofMillis(1234500), Duration.ofSeconds(1234567), Duration.ZERO);
+	}
+
+	@Test
+	void testMalformedReport() {
+		List<TLTestResult> results = new ArrayList<>();
+		byte[] report = "<testsuite name=\"s\"><testcase name=\"ok\"/><testcase name=\"cut\">".getBytes(
+				StandardCharsets.UTF_8);
+		assertThatThrownBy(() -> TLJUnitReader.read(new ByteArrayInputStream(report), results::add)).isInstanceOf(
+				TestLinkException.class);
+		// results before the error were already emitted
+		assertThat(results).extracting(TLTestResult::getName).containsExactly("ok");
+	}
+
+}
@@ -0,0 +1,276 @@
+package eu.qedv.tools.ootl.test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import br.eti.kinoshita.testlinkjavaapi.TestLinkAPI;
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionType;
+import br.eti.kinoshita.testlinkjavaapi.model.Execution;
+import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
+import eu.qedv.tools.ootl.TLBuild;
+import eu.qedv.tools.ootl.TLJournal;
+import eu.qedv.tools.ootl.TLTestCase;
+import eu.qedv.tools.ootl.TLTestProject;
+import eu.qedv.tools.ootl.TestLink;
+import eu.qedv.tools.ootl.TestLinkConfig;
+import eu.qedv.tools.ootl.exception.TestLinkException;
+import eu.qedv.tools.ootl.structure.ResultCode;
+import eu.qedv.tools.ootl.test.util.EmptyOptionalError;
+import eu.qedv.tools.ootl.test.util.TJAUtil;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TLJournalTest {
+
+	@Mock
+	TestLinkAPI api;
+
+	Path file;
+
+	@BeforeEach
+	void createJournalFile() throws IOException {
+		file = Files.createTempFile("journal", ".tlj");
+		Files.delete(file);
+	}
+
+	@AfterEach
+	void deleteJournalFile() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	void testReplay() throws InterruptedException {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "single");
+
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLBuild build = project.getBuild("plan", "build").orElseThrow(EmptyOptionalError::new);
+		TLTestCase testcase = project.getFirstLevelTestSuite("suite").orElseThrow(EmptyOptionalError::new)
+				.getTestCase("testcase").orElseThrow(EmptyOptionalError::new);
+
+		try (TLJournal journal = TLJournal.open(testlink, file)) {
+			journal.execute(testcase, build, ResultCode.SUCCESS, "first");
+			journal.execute(testcase, build, ResultCode.NOT_RUN, "ignored");
+			journal.execute("project", Arrays.asList("suite"), "testcase", "plan", "build", ResultCode.FAILURE,
+					"second");
+			// unknown test cases are dropped while testlink is reachable
+			journal.execute("project", Arrays.asList("suite"), "missing", "plan", "build", ResultCode.FAILURE, "");
+
+			assertThat(journal.awaitDrained(10, TimeUnit.SECONDS)).isTrue();
+			assertThat(journal.getPending()).isZero();
+		}
+		verify(api).setTestCaseExecutionResult(anyInt(), anyInt(), eq(10), eq(ExecutionStatus.PASSED), eq(100),
+				anyString(), eq("first"), anyBoolean(), anyString(), anyInt(), anyString(), any(), anyBoolean());
+		verify(api).setTestCaseExecutionResult(anyInt(), anyInt(), eq(10), eq(ExecutionStatus.FAILED), eq(100),
+				anyString(), eq("second"), anyBoolean(), anyString(), anyInt(), anyString(), any(), anyBoolean());
+		verify(api, times(2)).setTestCaseExecutionResult(anyInt(), anyInt(), anyInt(), any(ExecutionStatus.class),
+				anyInt(), anyString(), anyString(), anyBoolean(), anyString(), anyInt(), anyString(), any(),
+				anyBoolean());
+	}
+
+	@Test
+	void testResumeAfterReopen() throws InterruptedException {
+		// testlink unreachable, nothing can be replayed
+		when(api.getTestProjectByName("project")).thenThrow(new TestLinkAPIException("unreachable"));
+		when(api.ping()).thenThrow(new TestLinkAPIException("unreachable"));
+		TestLink offline = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		try (TLJournal journal = TLJournal.open(offline, file)) {
+			journal.execute("project", Arrays.asList("suite"), "testcase", "plan", "build", ResultCode.SUCCESS,
+					"offline");
+			assertThat(journal.awaitDrained(300, TimeUnit.MILLISECONDS)).isFalse();
+			assertThat(journal.getPending()).isEqualTo(1);
+		}
+
+		reset(api);
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "single");
+		TestLink online = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		try (TLJournal journal = TLJournal.open(online, file)) {
+			assertThat(journal.awaitDrained(10, TimeUnit.SECONDS)).isTrue();
+		}
+		// replayed entries are not replayed again
+		try (TLJournal journal = TLJournal.open(online, file)) {
+			assertThat(journal.getPending()).isZero();
+		}
+		verify(api, times(1)).setTestCaseExecutionResult(anyInt(), anyInt(), eq(10), eq(ExecutionStatus.PASSED), eq(
+				100), anyString(), eq("offline"), anyBoolean(), anyString(), anyInt(), anyString(), any(),
+				anyBoolean());
+	}
+
+	@Test
+	void testReplayAfterOutage() throws InterruptedException {
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "single");
+		AtomicBoolean down = new AtomicBoolean(true);
+		when(api.getTestProjectByName("project")).thenAnswer(inv -> {
+			if(down.get()) throw new TestLinkAPIException("Error in xml-rpc call", new IOException("Connection refused"));
+			return TJAUtil.getTestProject(1, "project");
+		});
+		when(api.ping()).thenAnswer(inv -> {
+			if(down.get()) throw new TestLinkAPIException("Error in xml-rpc call", new IOException("Connection refused"));
+			return "Hello!";
+		});
+
+		// the same connection before, during and after the outage
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		try (TLJournal journal = TLJournal.open(testlink, file)) {
+			journal.execute("project", Arrays.asList("suite"), "testcase", "plan", "build", ResultCode.SUCCESS,
+					"outage");
+			assertThat(journal.awaitDrained(300, TimeUnit.MILLISECONDS)).isFalse();
+			down.set(false);
+			assertThat(journal.awaitDrained(10, TimeUnit.SECONDS)).isTrue();
+		}
+		assertThat(testlink.getTestProject("project")).isPresent();
+		verify(api, times(1)).setTestCaseExecutionResult(anyInt(), anyInt(), eq(10), eq(ExecutionStatus.PASSED), eq(
+				100), anyString(), eq("outage"), anyBoolean(), anyString(), anyInt(), anyString(), any(),
+				anyBoolean());
+	}
+
+	@Test
+	void testRetryTimedOutExecution() throws InterruptedException {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "single");
+		when(api.ping()).thenReturn("Hello!");
+		when(api.setTestCaseExecutionResult(anyInt(), anyInt(), anyInt(), any(ExecutionStatus.class), anyInt(),
+				anyString(), anyString(), anyBoolean(), anyString(), anyInt(), anyString(), any(), anyBoolean()))
+						.thenThrow(new TestLinkAPIException("Error in xml-rpc call", new SocketTimeoutException(
+								"Read timed out"))).thenReturn(null);
+
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		try (TLJournal journal = TLJournal.open(testlink, file)) {
+			journal.execute("project", Arrays.asList("suite"), "testcase", "plan", "build", ResultCode.SUCCESS,
+					"timeout");
+			assertThat(journal.awaitDrained(10, TimeUnit.SECONDS)).isTrue();
+		}
+		// retried although testlink answered the ping
+		verify(api, times(2)).setTestCaseExecutionResult(anyInt(), anyInt(), eq(10), eq(ExecutionStatus.PASSED), eq(
+				100), anyString(), eq("timeout"), anyBoolean(), anyString(), anyInt(), anyString(), any(),
+				anyBoolean());
+	}
+
+	/**
+	 * Journals an execution while testlink is unreachable and returns the
+	 * offset of its record
+	 */
+	long journalOffline() throws IOException, InterruptedException {
+		when(api.getTestProjectByName("project")).thenThrow(new TestLinkAPIException("unreachable"));
+		when(api.ping()).thenThrow(new TestLinkAPIException("unreachable"));
+		TestLink offline = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		try (TLJournal journal = TLJournal.open(offline, file)) {
+			journal.execute("project", Arrays.asList("suite"), "testcase", "plan", "build", ResultCode.SUCCESS,
+					"crashed");
+			assertThat(journal.awaitDrained(300, TimeUnit.MILLISECONDS)).isFalse();
+		}
+		reset(api);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer checkpoint = ByteBuffer.allocate(8);
+			channel.read(checkpoint, 8);
+			return checkpoint.getLong(0);
+		}
+	}
+
+	@Test
+	void testResumeAlreadyReported() throws IOException, InterruptedException {
+		long offset = journalOffline();
+		// crashed after the execution reached testlink, before the checkpoint
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			ByteBuffer inFlight = ByteBuffer.allocate(8);
+			inFlight.putLong(0, offset);
+			channel.write(inFlight, 16);
+		}
+
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "single");
+		when(api.getLastExecutionResult(eq(10), eq(1), anyInt())).thenReturn(new Execution(120, 100, 1, new Date(),
+				ExecutionStatus.PASSED, 10, 1, 1, ExecutionType.AUTOMATED, "crashed"));
+		TestLink online = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		try (TLJournal journal = TLJournal.open(online, file)) {
+			assertThat(journal.awaitDrained(10, TimeUnit.SECONDS)).isTrue();
+		}
+		verify(api).getLastExecutionResult(eq(10), eq(1), anyInt());
+		verify(api, never()).setTestCaseExecutionResult(anyInt(), anyInt(), anyInt(), any(ExecutionStatus.class),
+				anyInt(), anyString(), anyString(), anyBoolean(), anyString(), anyInt(), anyString(), any(),
+				anyBoolean());
+	}
+
+	@Test
+	void testUnreadableRecordDropped() throws IOException, InterruptedException {
+		// a complete record with a valid checksum that is not an operation
+		byte[] payload = { 1 };
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		ByteBuffer journal = ByteBuffer.allocate(32 + 8 + payload.length + 4);
+		journal.putInt(0, 0x544C4A4E).putInt(4, 1).putLong(8, 32).putLong(16, -1);
+		journal.putInt(32, payload.length).putInt(36, (int) crc.getValue()).put(40, payload[0]);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			channel.write(journal);
+		}
+
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TJAUtil.mockTestcases(api, 1, 1, "single");
+		TestLink online = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		try (TLJournal opened = TLJournal.open(online, file)) {
+			opened.execute("project", Arrays.asList("suite"), "testcase", "plan", "build", ResultCode.SUCCESS,
+					"after");
+			assertThat(opened.awaitDrained(10, TimeUnit.SECONDS)).isTrue();
+			assertThat(opened.getFailure()).isEmpty();
+		}
+		verify(api).setTestCaseExecutionResult(anyInt(), anyInt(), eq(10), eq(ExecutionStatus.PASSED), eq(100),
+				anyString(), eq("after"), anyBoolean(), anyString(), anyInt(), anyString(), any(), anyBoolean());
+	}
+
+	@Test
+	void testLostRecordFails() throws IOException, InterruptedException {
+		when(api.getTestProjectByName("project")).thenThrow(new TestLinkAPIException("unreachable"));
+		when(api.ping()).thenThrow(new TestLinkAPIException("unreachable"));
+		TestLink offline = new TestLink(new TestLinkConfig(false, false, true, false, false), api, "tester");
+		try (TLJournal journal = TLJournal.open(offline, file)) {
+			journal.execute("project", Arrays.asList("suite"), "testcase", "plan", "build", ResultCode.SUCCESS,
+					"lost");
+			assertThat(journal.awaitDrained(150, TimeUnit.MILLISECONDS)).isFalse();
+			// the checksum of the pending record is overwritten while replay waits to retry
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				channel.write(ByteBuffer.allocate(4), 32 + 4);
+			}
+			assertThatThrownBy(() -> journal.awaitDrained(10, TimeUnit.SECONDS)).isInstanceOf(
+					TestLinkException.class);
+			assertThat(journal.getFailure()).isPresent();
+			assertThat(journal.getPending()).isEqualTo(1);
+		}
+	}
+}
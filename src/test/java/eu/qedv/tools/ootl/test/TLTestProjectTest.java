@@ -2,6 +2,7 @@ package eu.qedv.tools.ootl.test;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -10,16 +11,39 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import br.eti.kinoshita.testlinkjavaapi.TestLinkAPI;
+import br.eti.kinoshita.testlinkjavaapi.constants.TestCaseDetails;
+import br.eti.kinoshita.testlinkjavaapi.model.Build;
+import br.eti.kinoshita.testlinkjavaapi.model.TestCase;
+import br.eti.kinoshita.testlinkjavaapi.model.TestSuite;
 import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
+import eu.qedv.tools.ootl.CachePolicy;
 import eu.qedv.tools.ootl.TLBuild;
+import eu.qedv.tools.ootl.TLTestCase;
 import eu.qedv.tools.ootl.TLTestProject;
 import eu.qedv.tools.ootl.TLTestSuite;
 import eu.qedv.tools.ootl.TestLink;
@@ -105,6 +129,41 @@ class TLTestProjectTest {
 		verify(api, times(5)).getTestSuitesForTestSuite(anyInt());
 	}
 
+	@Test
+	void testPrefetch() {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockSuites(api, 1, "deep");
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+
+		assertThat(project.prefetch()).isEqualTo(32);
+		verify(api, times(1)).getFirstLevelTestSuitesForTestProject(anyInt());
+		verify(api, times(32)).getTestSuitesForTestSuite(anyInt());
+
+		TLTestSuite deep = project.getTestSuiteByPath("C/Child 1/Superchild/Names/Very/Very/Deep/Path").orElseThrow(
+				EmptyOptionalError::new);
+		assertThat(deep.getID()).isEqualTo(22);
+		verify(api, times(32)).getTestSuitesForTestSuite(anyInt());
+	}
+
+	@Test
+	void testPrefetchDepthLimit() {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockSuites(api, 1, "deep");
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+
+		assertThat(project.prefetch(Collections.singletonList("C"), 1, 2)).isEqualTo(6);
+		verify(api, times(1)).getTestSuitesForTestSuite(anyInt());
+		assertThat(project.prefetch(Collections.singletonList("Z/Y"), 3, 2)).isEqualTo(0);
+		// requests in flight are bounded by the limiter of the connection
+		assertThat(project.prefetch(Collections.singletonList("C"), 1, Integer.MAX_VALUE)).isEqualTo(6);
+		assertThatThrownBy(() -> project.prefetch(Collections.singletonList("C"), 1, 0)).isInstanceOf(
+				IllegalArgumentException.class);
+	}
+
 	@Test
 	void testGetBuildBasic() {
 		TJAUtil.mockBasicProject(api);
@@ -122,6 +181,7 @@ class TLTestProjectTest {
 	void testCreateBuildBasic() {
 		TJAUtil.mockBasicProject(api);
 		when(api.getTestPlanByName("plan", "project")).thenReturn(TJAUtil.getTestPlan(10, "plan", "project"));
+		when(api.getBuildsForTestPlan(10)).thenReturn(new Build[0]);
 		when(api.createBuild(eq(10), eq("build"), anyString())).thenReturn(TJAUtil.getBuild(100, 10, "build"));
 
 		TestLink testlink = new TestLink(new TestLinkConfig(false, false, false, false, true), api, "tester");
@@ -133,6 +193,82 @@ class TLTestProjectTest {
 		verify(api, times(1)).createBuild(eq(10), eq("build"), anyString());
 	}
 
+	@Test
+	void testBuildRegistry() {
+		TJAUtil.mockBasicProject(api);
+		when(api.getTestPlanByName("plan", "project")).thenReturn(TJAUtil.getTestPlan(10, "plan", "project"));
+		when(api.getBuildsForTestPlan(10)).thenReturn(new Build[] { TJAUtil.getBuild(100, 10, "build"), TJAUtil
+				.getBuild(101, 10, "nightly") });
+		when(api.createBuild(eq(10), eq("new"), anyString())).thenReturn(TJAUtil.getBuild(102, 10, "new"));
+
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, false, false, true), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+
+		TLBuild build = project.getBuild("plan", "build").orElseThrow(EmptyOptionalError::new);
+		TLBuild nightly = project.getBuild("plan", "nightly").orElseThrow(EmptyOptionalError::new);
+		assertThat(project.getBuild("plan", "build").orElseThrow(EmptyOptionalError::new)).isSameAs(build);
+		assertThat(nightly.getBuildName()).isEqualTo("nightly");
+		assertThat(project.getBuild("plan", "missing")).isEmpty();
+
+		TLBuild created = project.createBuild("plan", "new");
+		assertThat(project.getBuild("plan", "new").orElseThrow(EmptyOptionalError::new)).isSameAs(created);
+		assertThat(project.getBuilds("plan").size()).isEqualTo(3);
+
+		verify(api, times(1)).getTestPlanByName(anyString(), anyString());
+		verify(api, times(1)).getBuildsForTestPlan(anyInt());
+	}
+
+	@Test
+	void testBuildRegistryCreateFirst() throws Exception {
+		TJAUtil.mockBasicProject(api);
+		when(api.getTestPlanByName("plan", "project")).thenReturn(TJAUtil.getTestPlan(10, "plan", "project"));
+		when(api.getBuildsForTestPlan(10)).thenReturn(new Build[] { TJAUtil.getBuild(101, 10, "nightly"), TJAUtil
+				.getBuild(100, 10, "build") }, new Build[] { TJAUtil.getBuild(101, 10, "nightly"), TJAUtil.getBuild(100,
+						10, "build"), TJAUtil.getBuild(102, 10, "new") });
+		when(api.createBuild(eq(10), eq("new"), anyString())).thenReturn(TJAUtil.getBuild(102, 10, "new"));
+
+		CachePolicy policy = new CachePolicy(Long.MAX_VALUE, Duration.ofMillis(50), null, false);
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, false, false, true, policy), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+
+		// created before the builds of the plan were ever cached
+		TLBuild created = project.createBuild("plan", "new");
+		assertThat(project.getBuild("plan", "new").orElseThrow(EmptyOptionalError::new)).isSameAs(created);
+		assertThat(project.getBuilds("plan").stream().map(TLBuild::getBuildName)).containsExactly("nightly", "build",
+				"new");
+
+		// reloading the expired builds keeps the handles
+		TLBuild nightly = project.getBuild("plan", "nightly").orElseThrow(EmptyOptionalError::new);
+		Thread.sleep(100);
+		assertThat(project.getBuild("plan", "new").orElseThrow(EmptyOptionalError::new)).isSameAs(created);
+		assertThat(project.getBuild("plan", "nightly").orElseThrow(EmptyOptionalError::new)).isSameAs(nightly);
+		verify(api, times(2)).getBuildsForTestPlan(10);
+	}
+
+	@Test
+	void testGetOrCreateBuildConcurrent() throws Exception {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockBasicBuild(api);
+		when(api.createBuild(eq(10), eq("new"), anyString())).thenReturn(TJAUtil.getBuild(102, 10, "new"));
+
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, false, false, true), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<TLBuild>> futures = IntStream.range(0, 64).mapToObj(i -> executor.submit(() -> project
+					.getOrCreateBuild("plan", "new"))).collect(Collectors.toList());
+			TLBuild first = futures.get(0).get();
+			for(Future<TLBuild> future : futures) {
+				assertThat(future.get()).isSameAs(first);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertThat(project.getOrCreateBuild("plan", "build").getBuildName()).isEqualTo("build");
+		verify(api, times(1)).createBuild(eq(10), eq("new"), anyString());
+	}
+
 	@Test
 	void testCreateBuildNoPermissions() {
 		TJAUtil.mockBasicProject(api);
@@ -148,6 +284,7 @@ class TLTestProjectTest {
 	void testCreateBuildFailure() {
 		TJAUtil.mockBasicProject(api);
 		when(api.getTestPlanByName("plan", "project")).thenReturn(TJAUtil.getTestPlan(10, "plan", "project"));
+		when(api.getBuildsForTestPlan(10)).thenReturn(new Build[0]);
 		when(api.createBuild(eq(10), eq("build"), anyString())).thenThrow(TestLinkAPIException.class);
 
 		TestLink testlink = new TestLink(new TestLinkConfig(false, false, false, false, true), api, "tester");
@@ -155,4 +292,139 @@ class TLTestProjectTest {
 
 		assertThatThrownBy(() -> project.createBuild("plan", "build")).isInstanceOf(FailedCreationException.class);
 	}
+
+	@Test
+	void testSnapshotRoundTrip(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("project.snapshot");
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockSuites(api, 1, "deep");
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		project.getTestSuiteByPath("C/Child 1/Superchild/Test").orElseThrow(EmptyOptionalError::new);
+		project.saveSnapshot(file);
+
+		TestLinkAPI warmApi = Mockito.mock(TestLinkAPI.class);
+		TJAUtil.mockBasicProject(warmApi);
+		TJAUtil.mockSuites(warmApi, 1, "deep");
+		TLTestProject warm = new TestLink(TestLinkConfig.NO_PERMISSIONS, warmApi, "tester").getTestProject("project")
+				.orElseThrow(EmptyOptionalError::new);
+		CompletableFuture<Void> revalidation = warm.loadSnapshot(file).orElseThrow(EmptyOptionalError::new);
+
+		TLTestSuite deep = warm.getTestSuiteByPath("C/Child 1/Superchild/Test").orElseThrow(EmptyOptionalError::new);
+		assertThat(deep.getID()).isEqualTo(17);
+		assertThat(deep.getParent().orElseThrow(EmptyOptionalError::new).getName()).isEqualTo("Superchild");
+		revalidation.get();
+
+		// only the revalidation talked to testlink
+		verify(warmApi, times(1)).getFirstLevelTestSuitesForTestProject(anyInt());
+		verify(warmApi, times(3)).getTestSuitesForTestSuite(anyInt());
+		assertThat(warm.getTestSuiteByPath("C/Child 1/Superchild/Test").orElseThrow(EmptyOptionalError::new))
+				.isSameAs(deep);
+	}
+
+	@Test
+	void testSnapshotRevalidation(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("project.snapshot");
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockSuites(api, 1, "deep");
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new).getTestSuiteByPath("A/Kid A");
+		testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new).saveSnapshot(file);
+
+		TestLinkAPI changedApi = Mockito.mock(TestLinkAPI.class);
+		TJAUtil.mockBasicProject(changedApi);
+		TJAUtil.mockSuites(changedApi, 1, "basic");
+		TLTestProject changed = new TestLink(TestLinkConfig.NO_PERMISSIONS, changedApi, "tester").getTestProject(
+				"project").orElseThrow(EmptyOptionalError::new);
+		changed.loadSnapshot(file).orElseThrow(EmptyOptionalError::new).get();
+
+		assertThat(changed.getTestSuiteByPath("Parent/Child 2")).isPresent();
+		assertThat(changed.getTestSuiteByPath("A")).isEmpty();
+	}
+
+	@Test
+	void testSnapshotRevalidationContent(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("project.snapshot");
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TestCase original = TJAUtil.getTestCase(1, 1, 1, "testcase");
+		original.setSteps(Collections.emptyList());
+		when(api.getTestCasesForTestSuite(anyInt(), anyBoolean(), eq(TestCaseDetails.FULL))).thenReturn(
+				new TestCase[] { original });
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		TLTestSuite cached = project.getTestSuiteByPath("suite").orElseThrow(EmptyOptionalError::new);
+		cached.getTestSuites();
+		cached.getTestCases();
+		project.saveSnapshot(file);
+
+		// same suites and test case, with the summary edited in place
+		TestLinkAPI changedApi = Mockito.mock(TestLinkAPI.class);
+		TJAUtil.mockBasicProject(changedApi);
+		TJAUtil.mockSuites(changedApi, 1, "single");
+		// revalidation waits until the restored handle was looked up
+		CountDownLatch lookedUp = new CountDownLatch(1);
+		TestSuite[] firstLevel = changedApi.getFirstLevelTestSuitesForTestProject(1);
+		when(changedApi.getFirstLevelTestSuitesForTestProject(anyInt())).thenAnswer(inv -> {
+			lookedUp.await();
+			return firstLevel;
+		});
+		TestCase edited = TJAUtil.getTestCase(1, 1, 1, "testcase");
+		edited.setSummary("edited");
+		edited.setSteps(Collections.emptyList());
+		when(changedApi.getTestCasesForTestSuite(anyInt(), anyBoolean(), eq(TestCaseDetails.FULL))).thenReturn(
+				new TestCase[] { edited });
+		TLTestProject changed = new TestLink(TestLinkConfig.NO_PERMISSIONS, changedApi, "tester").getTestProject(
+				"project").orElseThrow(EmptyOptionalError::new);
+		CompletableFuture<Void> revalidation = changed.loadSnapshot(file).orElseThrow(EmptyOptionalError::new);
+		TLTestSuite suite = changed.getTestSuiteByPath("suite").orElseThrow(EmptyOptionalError::new);
+		TLTestCase restored = suite.getTestCase("testcase").orElseThrow(EmptyOptionalError::new);
+		lookedUp.countDown();
+		revalidation.get();
+
+		assertThat(suite.getTestCase("testcase").orElseThrow(EmptyOptionalError::new)).isNotSameAs(restored);
+		assertThat(changed.getTestSuiteByPath("suite")).containsSame(suite);
+	}
+
+	@Test
+	void testLoadMissingSnapshot(@TempDir Path dir) throws Exception {
+		TJAUtil.mockBasicProject(api);
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		assertThat(project.loadSnapshot(dir.resolve("missing"))).isEmpty();
+	}
+
+	@Test
+	void testLoadCorruptSnapshot(@TempDir Path dir) throws Exception {
+		TJAUtil.mockBasicProject(api);
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		// absurd and negative list lengths are rejected before allocating
+		assertThat(project.loadSnapshot(writeSnapshotHeader(dir.resolve("huge"), 1 << 30))).isEmpty();
+		assertThat(project.loadSnapshot(writeSnapshotHeader(dir.resolve("negative"), -2))).isEmpty();
+		// lengths beyond the end of the file fail while reading
+		assertThat(project.loadSnapshot(writeSnapshotHeader(dir.resolve("truncated"), 1 << 20))).isEmpty();
+	}
+
+	/**
+	 * Writes a snapshot of project 1 that ends after the number of first level
+	 * test suites
+	 */
+	static Path writeSnapshotHeader(Path file, int suites) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(0x544C5350);
+			out.writeInt(2);
+			out.writeInt(1);
+			byte[] name = "project".getBytes(StandardCharsets.UTF_8);
+			out.writeInt(name.length);
+			out.write(name);
+			out.writeInt(suites);
+		}
+		return file;
+	}
 }
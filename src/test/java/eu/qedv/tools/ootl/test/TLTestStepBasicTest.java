@@ -6,6 +6,9 @@ import java.time.Duration;
 
 import org.junit.jupiter.api.Test;
 
+import eu.qedv.tools.ootl.structure.ResultCode;
+import eu.qedv.tools.ootl.structure.TLStepTree;
+import eu.qedv.tools.ootl.structure.TLTestResult;
 import eu.qedv.tools.ootl.structure.TLTestStep;
 
 class TLTestStepBasicTest {
@@ -50,4 +53,130 @@ class TLTestStepBasicTest {
 		assertEquals(1, parent.getStep(2).getCount());
 	}
 
+	@Test
+	void testFingerprint() {
+		TLTestStep parent = new TLTestStep(null).setName("parent");
+		new TLTestStep(parent).setName("first");
+		for (int i = 0; i < 12; ++i) {
+			new TLTestStep(parent).setName("twin");
+		}
+		new TLTestStep(parent);
+		assertEquals(TLTestStep.fingerprint(parent.toSteps(1)), parent.getFingerprint());
+
+		parent.mergeSteps();
+		assertEquals(TLTestStep.fingerprint(parent.toSteps(1)), parent.getFingerprint());
+
+		long merged = parent.getFingerprint();
+		parent.getStep(0).setName("firs");
+		assertNotEquals(merged, parent.getFingerprint());
+		assertNotEquals(new TLTestStep(null).getFingerprint(), merged);
+	}
+
+	@Test
+	void testAggregates() {
+		TLTestStep root = new TLTestStep(null).setName("root");
+		TLTestStep group = new TLTestStep(root).setName("group");
+		TLTestStep leaf = new TLTestStep(group).setName("leaf").setResult(ResultCode.SUCCESS).setDuration(Duration
+				.ofMillis(7));
+		new TLTestStep(root).setName("other").setResult(ResultCode.SKIPPED).setDuration(Duration.ofMillis(3));
+
+		assertEquals(ResultCode.SKIPPED, root.getResult());
+		assertEquals(4, root.getNodeCount());
+		assertEquals(10, root.getTotalDuration().toMillis());
+		int hash = root.hashCode();
+
+		// changes deep in the tree invalidate the aggregates of all ancestors
+		leaf.setResult(ResultCode.FAILURE);
+		assertEquals(ResultCode.FAILURE, root.getResult());
+		assertNotEquals(hash, root.hashCode());
+		new TLTestStep(group).setName("late").setResult(ResultCode.SUCCESS).setDuration(Duration.ofMillis(5));
+		assertEquals(5, root.getNodeCount());
+		assertEquals(15, root.getTotalDuration().toMillis());
+
+		TLTestStep added = new TLTestStep(null).setName("added");
+		group.addStep(added);
+		assertSame(group, added.getParent());
+		assertEquals(ResultCode.FAILURE, root.getResult());
+		leaf.setResult(ResultCode.SUCCESS);
+		assertEquals(ResultCode.NOT_RUN, root.getResult());
+	}
+
+	@Test
+	void testMergeWide() {
+		TLTestStep sequential = wideStep();
+		TLTestStep parallel = wideStep();
+		sequential.mergeSteps();
+		parallel.mergeSteps(true);
+
+		for (TLTestStep merged : new TLTestStep[] { sequential, parallel }) {
+			assertEquals(3, merged.steps());
+			assertEquals(50000, merged.getStep(0).getCount());
+			assertEquals(50000, merged.getStep(0).getDuration().toMillis());
+			assertEquals(100, merged.getStep(1).getCount());
+			assertEquals(1, merged.getStep(1).steps());
+			assertEquals(10, merged.getStep(1).getStep(0).getCount());
+			assertEquals(1, merged.getStep(2).getCount());
+			assertEquals(50000, merged.getStep(0).getTotalDuration().toMillis());
+			assertEquals(5, merged.getNodeCount());
+		}
+		assertEquals(sequential, parallel);
+		assertEquals(sequential.getFingerprint(), parallel.getFingerprint());
+	}
+
+	private static TLTestStep wideStep() {
+		TLTestStep root = new TLTestStep(null).setName("root");
+		for (int i = 0; i < 50000; ++i) {
+			new TLTestStep(root).setName("iteration").setResult(ResultCode.SUCCESS).setDuration(Duration.ofMillis(1));
+		}
+		for (int i = 0; i < 100; ++i) {
+			TLTestStep group = new TLTestStep(root).setName("group");
+			for (int j = 0; j < 10; ++j) {
+				new TLTestStep(group).setName("inner").setResult(ResultCode.SUCCESS).setDuration(Duration.ofNanos(100000));
+			}
+		}
+		new TLTestStep(root).setName("last").setResult(ResultCode.FAILURE).setDuration(Duration.ofMillis(1));
+		return root;
+	}
+
+	@Test
+	void testCompactTree() {
+		TLTestResult result = new TLTestResult();
+		result.setName("result");
+		TLTestStep group = new TLTestStep(result).setName("group");
+		new TLTestStep(group).setName("inner").setResult(ResultCode.SUCCESS).setDuration(Duration.ofMillis(2));
+		new TLTestStep(group).setName("inner").setResult(ResultCode.SKIPPED).setDuration(Duration.ofMillis(3));
+		new TLTestStep(result).setName("twin").setResult(ResultCode.SUCCESS).setInfo("info");
+		new TLTestStep(result).setName("twin").setResult(ResultCode.SUCCESS);
+		result.mergeSteps();
+
+		TLStepTree tree = TLStepTree.of(result);
+		TLTestStep root = tree.getRoot();
+		assertEquals(5, tree.size());
+		assertEquals(result.getResult(), root.getResult());
+		assertEquals(result.getFingerprint(), root.getFingerprint());
+		assertEquals(result.toSteps(2).size(), root.toSteps(2).size());
+		for (int i = 0; i < result.steps(); ++i) {
+			assertEquals(result.toSteps(2).get(i).getActions(), root.toSteps(2).get(i).getActions());
+		}
+		assertEquals(result.getTotalDuration(), root.getTotalDuration());
+		assertEquals(result.getNodeCount(), root.getNodeCount());
+		// compact steps keep the structural equality of the original tree
+		assertEquals(result, root);
+		assertEquals(root, result);
+		assertEquals(result.hashCode(), root.hashCode());
+		assertEquals(result.getStep(0), root.getStep(0));
+		assertNotEquals(result.getStep(0), root.getStep(1));
+
+		TLTestStep twin = root.getStep(1);
+		assertEquals("twin", twin.getName());
+		assertEquals(2, twin.getCount());
+		assertEquals("info", twin.getInfo());
+		assertEquals(root, twin.getParent());
+		assertEquals(ResultCode.SKIPPED, root.getStep(0).getResult());
+		assertEquals(2, root.getStep(0).getSteps().size());
+		assertNull(root.getExecutionTime());
+		assertThrows(UnsupportedOperationException.class, () -> twin.setName("other"));
+		assertThrows(UnsupportedOperationException.class, root::mergeSteps);
+	}
+
 }
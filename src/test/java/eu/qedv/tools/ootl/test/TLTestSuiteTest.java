@@ -13,8 +13,17 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -29,7 +38,9 @@ import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionType;
 import br.eti.kinoshita.testlinkjavaapi.constants.TestCaseDetails;
 import br.eti.kinoshita.testlinkjavaapi.constants.TestCaseStatus;
 import br.eti.kinoshita.testlinkjavaapi.constants.TestImportance;
+import br.eti.kinoshita.testlinkjavaapi.model.TestCase;
 import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
+import eu.qedv.tools.ootl.CachePolicy;
 import eu.qedv.tools.ootl.TLTestCase;
 import eu.qedv.tools.ootl.TLTestProject;
 import eu.qedv.tools.ootl.TLTestSuite;
@@ -85,6 +96,35 @@ public class TLTestSuiteTest {
 		verify(api, times(1)).getTestCasesForTestSuite(anyInt(), anyBoolean(), any(TestCaseDetails.class));
 	}
 
+	@Test
+	void testLazyTestCaseDetails() {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		TestCase simple = new TestCase();
+		simple.setId(5);
+		simple.setName("simple");
+		when(api.getTestCasesForTestSuite(anyInt(), anyBoolean(), eq(TestCaseDetails.SIMPLE))).thenReturn(
+				new TestCase[] { simple });
+		TestCase full = TJAUtil.getTestCase(5, 1, 1, "simple");
+		full.setSteps(Collections.emptyList());
+		when(api.getTestCase(5, null, null)).thenReturn(full);
+
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, false, false, false, CachePolicy.UNBOUNDED,
+				TestCaseDetails.SIMPLE), api, "tester");
+		TLTestSuite suite = testlink.getTestProject("project").flatMap(p -> p.getFirstLevelTestSuite("suite"))
+				.orElseThrow(EmptyOptionalError::new);
+		TLTestCase testcase = suite.getTestCase("simple").orElseThrow(EmptyOptionalError::new);
+		assertThat(testcase.getID()).isEqualTo(5);
+		verify(api, never()).getTestCase(anyInt(), any(), any());
+
+		// summary and steps are loaded once, when needed to compare
+		assertThat(testcase.update("", new TLTestResult())).isSameAs(testcase);
+		assertThat(testcase.update("", new TLTestResult())).isSameAs(testcase);
+		assertThat(testcase.getVersion()).isEqualTo(1);
+		verify(api, times(1)).getTestCase(anyInt(), any(), any());
+		verify(api, never()).getTestCasesForTestSuite(anyInt(), anyBoolean(), eq(TestCaseDetails.FULL));
+	}
+
 	@Test
 	void testCreateTestCaseBasic() {
 		TLTestSuite suite = initTestSuiteWithTestCases("basic", new TestLinkConfig(true, false, false, false, false));
@@ -101,6 +141,43 @@ public class TLTestSuiteTest {
 				ActionOnDuplicate.BLOCK);
 	}
 
+	@Test
+	void testGetCreatedTestCaseByName() {
+		TLTestSuite suite = initTestSuiteWithTestCases("basic", new TestLinkConfig(true, false, false, false, false));
+		when(api.createTestCase("case", 1, 1, "tester", "", Collections.emptyList(), "", TestCaseStatus.FINAL,
+				TestImportance.MEDIUM, ExecutionType.AUTOMATED, 0, 0, true, ActionOnDuplicate.BLOCK)).thenReturn(TJAUtil
+						.getTestCase(1800, 1, 1, "case"));
+
+		assertThat(suite.getTestCase("case").isPresent()).isFalse();
+		TLTestCase testcase = suite.createTestCase("case", "", new TLTestResult());
+		assertThat(suite.getTestCase("case").orElseThrow(EmptyOptionalError::new)).isSameAs(testcase);
+		assertThat(suite.getTestCases()).hasSize(5).endsWith(testcase);
+		verify(api, times(1)).getTestCasesForTestSuite(anyInt(), anyBoolean(), any(TestCaseDetails.class));
+	}
+
+	@Test
+	void testCreateTestCaseConcurrent() throws Exception {
+		TLTestSuite suite = initTestSuiteWithTestCases("basic", new TestLinkConfig(true, false, false, false, false));
+		when(api.createTestCase(anyString(), eq(1), eq(1), eq("tester"), anyString(), anyList(), anyString(), any(
+				TestCaseStatus.class), any(TestImportance.class), any(ExecutionType.class), anyInt(), anyInt(),
+				anyBoolean(), any(ActionOnDuplicate.class))).thenAnswer(inv -> TJAUtil.getTestCase(Integer.parseInt(inv
+						.<String>getArgument(0)), 1, 1, inv.getArgument(0)));
+
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<TLTestCase>> futures = IntStream.range(100, 300).mapToObj(i -> executor.submit(() -> suite
+					.createTestCase(Integer.toString(i), "", new TLTestResult()))).collect(Collectors.toList());
+			for(Future<TLTestCase> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertThat(suite.getTestCases().size()).isEqualTo(204);
+		assertThat(suite.getTestCase("250").orElseThrow(EmptyOptionalError::new).getID()).isEqualTo(250);
+		verify(api, times(1)).getTestCasesForTestSuite(anyInt(), anyBoolean(), any(TestCaseDetails.class));
+	}
+
 	@Test
 	void testCreateTestCaseNoPermissions() {
 		TLTestSuite suite = initTestSuiteWithTestCases("basic", TestLinkConfig.NO_PERMISSIONS);
@@ -154,4 +231,73 @@ public class TLTestSuiteTest {
 
 		assertThatThrownBy(() -> suite.createTestSuite("new suite")).isInstanceOf(FailedCreationException.class);
 	}
+
+	@Test
+	void testHandlesReusedAfterExpiry() throws InterruptedException {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockSuites(api, 1, "deep");
+		when(api.getTestCasesForTestSuite(anyInt(), anyBoolean(), eq(TestCaseDetails.FULL))).thenAnswer(
+				inv -> new TestCase[] { getCompleteTestCase() });
+		when(api.getTestCase(1, null, 1)).thenAnswer(inv -> getCompleteTestCase());
+		CachePolicy policy = new CachePolicy(Long.MAX_VALUE, Duration.ofMillis(50), null, false);
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, false, false, false, policy), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+
+		TLTestSuite suite = project.getTestSuiteByPath("C/Child 1/Superchild").orElseThrow(EmptyOptionalError::new);
+		TLTestSuite parent = project.getTestSuiteByPath("C/Child 1").orElseThrow(EmptyOptionalError::new);
+		TLTestCase testcase = suite.getTestCase("testcase").orElseThrow(EmptyOptionalError::new);
+		testcase.update("", new TLTestResult());
+		Thread.sleep(100);
+
+		// reloaded content keeps the handles the resolved paths hold
+		assertThat(project.getFirstLevelTestSuite("C").flatMap(c -> c.getTestSuite("Child 1"))).containsSame(parent);
+		assertThat(parent.getTestSuite("Superchild")).containsSame(suite);
+		assertThat(project.getTestSuiteByPath("C/Child 1/Superchild")).containsSame(suite);
+		assertThat(suite.getTestCase("testcase")).containsSame(testcase);
+		testcase.update("", new TLTestResult());
+		verify(api, times(2)).getFirstLevelTestSuitesForTestProject(1);
+		verify(api, times(2)).getTestSuitesForTestSuite(9);
+		verify(api, times(2)).getTestCasesForTestSuite(anyInt(), anyBoolean(), any(TestCaseDetails.class));
+		verify(api, times(1)).getTestCase(anyInt(), any(), any());
+	}
+
+	@Test
+	void testSoftTestCaseDetails() {
+		TJAUtil.mockBasicProject(api);
+		TJAUtil.mockSuites(api, 1, "single");
+		when(api.getTestCasesForTestSuite(anyInt(), anyBoolean(), eq(TestCaseDetails.FULL))).thenAnswer(
+				inv -> new TestCase[] { getCompleteTestCase() });
+		when(api.getTestCase(1, null, 1)).thenAnswer(inv -> getCompleteTestCase());
+		List<Reference<?>> references = Collections.synchronizedList(new ArrayList<>());
+		// stands in for the garbage collector, which clears soft references only under memory pressure
+		CachePolicy policy = new CachePolicy(Long.MAX_VALUE, null, null, true) {
+			@Override
+			protected <V> Reference<V> softReference(V value) {
+				Reference<V> reference = new SoftReference<>(value);
+				references.add(reference);
+				return reference;
+			}
+		};
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, false, false, false, policy), api, "tester");
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+
+		TLTestSuite suite = project.getTestSuiteByPath("suite").orElseThrow(EmptyOptionalError::new);
+		TLTestCase testcase = suite.getTestCase("testcase").orElseThrow(EmptyOptionalError::new);
+		assertThat(references).isNotEmpty();
+		references.forEach(Reference::clear);
+
+		assertThat(project.getFirstLevelTestSuite("suite")).containsSame(suite);
+		assertThat(suite.getTestCase("testcase")).containsSame(testcase);
+		// summary and steps are loaded again on demand
+		testcase.update("", new TLTestResult());
+		verify(api, times(2)).getFirstLevelTestSuitesForTestProject(1);
+		verify(api, times(2)).getTestCasesForTestSuite(anyInt(), anyBoolean(), any(TestCaseDetails.class));
+		verify(api, times(1)).getTestCase(1, null, 1);
+	}
+
+	static TestCase getCompleteTestCase() {
+		TestCase testcase = TJAUtil.getTestCase(1, 1, 1, "testcase");
+		testcase.setSteps(Collections.emptyList());
+		return testcase;
+	}
 }
@@ -0,0 +1,133 @@
+package eu.qedv.tools.ootl.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
+import eu.qedv.tools.ootl.TLLimiter;
+import eu.qedv.tools.ootl.TLTestSuite;
+import eu.qedv.tools.ootl.TLTransport;
+import eu.qedv.tools.ootl.TestLink;
+import eu.qedv.tools.ootl.TestLinkConfig;
+import eu.qedv.tools.ootl.metrics.TLMetricsRegistry;
+import eu.qedv.tools.ootl.test.server.TLFakeServer;
+import eu.qedv.tools.ootl.test.util.EmptyOptionalError;
+
+class TLTransportTest {
+
+	TLFakeServer server;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = new TLFakeServer("key");
+		for(int i = 0; i < 20; ++i) {
+			server.addTestProject("project" + i, "PRJ" + i);
+		}
+		server.addTestSuite("project0", "first", "second");
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.close();
+	}
+
+	@Test
+	void testConnectionsReused() throws IOException {
+		try(TLTransport transport = new TLTransport()) {
+			TestLink tl = new TestLink(TestLinkConfig.NO_PERMISSIONS, server.getURL(), "key", "tester", transport);
+			for(int i = 0; i < 20; ++i) {
+				assertThat(tl.getTestProject("project" + i).isPresent()).isTrue();
+			}
+			// checking the developer key while connecting opens one more
+			assertThat(server.getConnectionCount()).isLessThanOrEqualTo(2);
+			assertThat(server.getCompressedResponseCount()).isEqualTo(20);
+			assertThat(transport.getIdleConnections()).isEqualTo(1);
+			assertThat(transport.getLeasedConnections()).isZero();
+		}
+	}
+
+	@Test
+	void testGzipRequests() throws IOException {
+		try(TLTransport transport = new TLTransport(4, Duration.ofSeconds(1), Duration.ofSeconds(1), true)) {
+			TestLink tl = new TestLink(TestLinkConfig.NO_PERMISSIONS, server.getURL(), "key", "tester", transport);
+			TLTestSuite suite = tl.getTestProject("project0").flatMap(p -> p.getTestSuiteByPath("first/second"))
+					.orElseThrow(EmptyOptionalError::new);
+			assertThat(suite.getName()).isEqualTo("second");
+		}
+	}
+
+	@Test
+	void testReadTimeout() throws IOException {
+		try(TLTransport transport = new TLTransport(4, Duration.ofSeconds(1), Duration.ofMillis(50), false)) {
+			TestLink tl = new TestLink(TestLinkConfig.NO_PERMISSIONS, server.getURL(), "key", "tester", transport);
+			TLMetricsRegistry metrics = new TLMetricsRegistry();
+			tl.setMetrics(metrics);
+			server.setLatency(Duration.ofMillis(300), Duration.ofMillis(300));
+
+			assertThatThrownBy(() -> tl.getTestProject("project0")).isInstanceOf(TestLinkAPIException.class);
+			assertThat(metrics.getErrorCount("getTestProjectByName")).isEqualTo(1);
+			assertThat(metrics.getTotalLatency("getTestProjectByName")).isLessThan(Duration.ofMillis(300));
+			assertThat(transport.getLeasedConnections()).isZero();
+		}
+	}
+
+	@Test
+	void testBatching() throws IOException, InterruptedException, ExecutionException {
+		try(TLTransport transport = new TLTransport(8, Duration.ofSeconds(1), Duration.ofSeconds(1), false,
+				Duration.ofMillis(20), 8)) {
+			assertThat(lookUpConcurrently(transport)).isEqualTo(20);
+			assertThat(transport.getMulticallCount()).isPositive();
+			assertThat(transport.getBatchedCallCount()).isGreaterThan(transport.getMulticallCount());
+			assertThat(server.getRequestCount("system.multicall")).isEqualTo(transport.getMulticallCount());
+			assertThat(server.getRequestCount("tl.getTestProjectByName")).isEqualTo(20);
+		}
+	}
+
+	@Test
+	void testBatchingFallback() throws IOException, InterruptedException, ExecutionException {
+		server.setMulticall(false);
+		try(TLTransport transport = new TLTransport(8, Duration.ofSeconds(1), Duration.ofSeconds(1), false,
+				Duration.ofMillis(20), 8)) {
+			assertThat(lookUpConcurrently(transport)).isEqualTo(20);
+			assertThat(server.getRequestCount("system.multicall")).isPositive();
+			assertThat(transport.getMulticallCount()).isZero();
+			assertThat(server.getRequestCount("tl.getTestProjectByName")).isEqualTo(20);
+		}
+	}
+
+	/**
+	 * Looks up all projects from 8 threads, returns the number found
+	 */
+	private int lookUpConcurrently(TLTransport transport) throws InterruptedException, ExecutionException {
+		TestLink tl = new TestLink(TestLinkConfig.NO_PERMISSIONS, server.getURL(), "key", "tester", transport);
+		tl.setLimiter(new TLLimiter(8, 8, 8));
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for(int i = 0; i < 20; ++i) {
+				String name = "project" + i;
+				futures.add(executor.submit(() -> tl.getTestProject(name).isPresent()));
+			}
+			int found = 0;
+			for(Future<Boolean> future : futures) {
+				if(future.get()) ++found;
+			}
+			return found;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -1,21 +1,37 @@
 package eu.qedv.tools.ootl.test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import br.eti.kinoshita.testlinkjavaapi.TestLinkAPI;
+import br.eti.kinoshita.testlinkjavaapi.model.Build;
+import br.eti.kinoshita.testlinkjavaapi.model.TestSuite;
 import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
+import eu.qedv.tools.ootl.CachePolicy;
+import eu.qedv.tools.ootl.TLLimiter;
 import eu.qedv.tools.ootl.TLTestProject;
 import eu.qedv.tools.ootl.TestLink;
 import eu.qedv.tools.ootl.TestLinkConfig;
+import eu.qedv.tools.ootl.metrics.TLMetricsRegistry;
 import eu.qedv.tools.ootl.test.util.EmptyOptionalError;
 import eu.qedv.tools.ootl.test.util.TJAUtil;
 
@@ -57,4 +73,186 @@ class TestLinkTest {
 		assertThat(testlink.getTestProject("no-exist").isPresent()).isFalse();
 	}
 
+	@Test
+	void testNegativeTimeToLive() throws InterruptedException {
+		when(api.getTestProjectByName(anyString())).thenThrow(new TestLinkAPIException("No such test project"))
+				.thenReturn(TJAUtil.getTestProject(1, "late"));
+
+		CachePolicy policy = new CachePolicy(100, null, Duration.ofMillis(50), false);
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, false, false, false, policy), api, "tester");
+		assertThat(testlink.getTestProject("late").isPresent()).isFalse();
+		assertThat(testlink.getTestProject("late").isPresent()).isFalse();
+		verify(api, times(1)).getTestProjectByName(anyString());
+
+		Thread.sleep(100);
+		TLTestProject project = testlink.getTestProject("late").orElseThrow(EmptyOptionalError::new);
+		assertThat(testlink.getTestProject("late").orElseThrow(EmptyOptionalError::new)).isSameAs(project);
+		verify(api, times(2)).getTestProjectByName(anyString());
+	}
+
+	@Test
+	void testMaximumSize() {
+		when(api.getTestProjectByName(anyString())).then(i -> TJAUtil.getTestProject(1, i.getArgument(0)));
+
+		CachePolicy policy = new CachePolicy(2, null, null, false);
+		TestLink testlink = new TestLink(new TestLinkConfig(false, false, false, false, false, policy), api, "tester");
+		TLTestProject first = testlink.getTestProject("first").orElseThrow(EmptyOptionalError::new);
+		testlink.getTestProject("second");
+		testlink.getTestProject("third");
+		verify(api, times(3)).getTestProjectByName(anyString());
+
+		// the least recently used project was evicted and is loaded again
+		assertThat(testlink.getTestProject("first").orElseThrow(EmptyOptionalError::new)).isNotSameAs(first);
+		verify(api, times(4)).getTestProjectByName(anyString());
+	}
+
+	@Test
+	void testLimiterBackoff() {
+		when(api.getTestProjectByName(anyString())).thenThrow(new TestLinkAPIException("Error in xml-rpc call",
+				new IOException("Connection refused"))).thenThrow(new TestLinkAPIException("No such test project"));
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		testlink.setLimiter(new TLLimiter(10, 1, 64));
+		assertThatThrownBy(() -> testlink.getTestProject("down")).isInstanceOf(TestLinkAPIException.class);
+		assertThat(testlink.getLimiter().getLimit()).isEqualTo(9);
+
+		// errors reported by testlink do not indicate overload
+		testlink.getTestProject("no-exist");
+		assertThat(testlink.getLimiter().getLimit()).isEqualTo(9);
+		assertThat(testlink.getLimiter().getInFlight()).isZero();
+	}
+
+	@Test
+	void testLimiterBackoffOncePerBurst() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(8);
+		CountDownLatch outage = new CountDownLatch(1);
+		when(api.getTestProjectByName(anyString())).then(i -> {
+			started.countDown();
+			outage.await();
+			throw new TestLinkAPIException("Error in xml-rpc call", new IOException("Connection refused"));
+		});
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		testlink.setLimiter(new TLLimiter(10, 1, 64));
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; ++i) {
+			String name = "project" + i;
+			threads.add(new Thread(() -> {
+				try {
+					testlink.getTestProject(name);
+				} catch (TestLinkAPIException e) {
+					// expected, testlink is down
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		started.await();
+		outage.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// all calls were sent at the old limit, the burst shrinks it once
+		assertThat(testlink.getLimiter().getLimit()).isEqualTo(9);
+		assertThat(testlink.getLimiter().getInFlight()).isZero();
+	}
+
+	@Test
+	void testLimiterLatencyPerMethod() {
+		TJAUtil.mockBasicProject(api);
+		when(api.getTestPlanByName(anyString(), eq("project"))).then(i -> {
+			Thread.sleep(50);
+			return TJAUtil.getTestPlan(10, i.getArgument(0), "project");
+		});
+		when(api.getBuildsForTestPlan(anyInt())).thenReturn(new Build[0]);
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		testlink.setLimiter(new TLLimiter(10, 1, 64));
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		for (int i = 0; i < 4; ++i) {
+			project.getBuilds("plan" + i);
+		}
+		// plan lookups are slower than project lookups, but not slower than before
+		assertThat(testlink.getLimiter().getLimit()).isEqualTo(10);
+	}
+
+	@Test
+	void testFixedLimit() throws InterruptedException {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		when(api.getTestProjectByName(anyString())).then(i -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			Thread.sleep(20);
+			running.decrementAndGet();
+			return TJAUtil.getTestProject(1, i.getArgument(0));
+		});
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		testlink.setLimiter(new TLLimiter(2, 2, 2));
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; ++i) {
+			String name = "project" + i;
+			threads.add(new Thread(() -> testlink.getTestProject(name)));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertThat(maxRunning.get()).isEqualTo(2);
+		verify(api, times(8)).getTestProjectByName(anyString());
+		assertThat(testlink.getLimiter().getQueueDepth()).isZero();
+	}
+
+	@Test
+	void testConcurrentLookupsCoalesced() throws InterruptedException {
+		when(api.getTestProjectByName(anyString())).then(i -> {
+			Thread.sleep(50);
+			return TJAUtil.getTestProject(1, i.getArgument(0));
+		});
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		List<TLTestProject> projects = Collections.synchronizedList(new ArrayList<>());
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 16; ++i) {
+			threads.add(new Thread(() -> projects.add(testlink.getTestProject("project").orElseThrow(
+					EmptyOptionalError::new))));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertThat(projects).hasSize(16);
+		assertThat(projects).allMatch(p -> p == projects.get(0));
+		verify(api, times(1)).getTestProjectByName(anyString());
+	}
+
+	@Test
+	void testMetrics() {
+		when(api.getTestProjectByName(anyString())).then(i -> {
+			if (!"project".equals(i.getArgument(0)))
+				throw new TestLinkAPIException("No such test project");
+			return TJAUtil.getTestProject(1, "project");
+		});
+		when(api.getFirstLevelTestSuitesForTestProject(1)).thenReturn(new TestSuite[] { TJAUtil.getTestSuite(1, 0, 1,
+				"suite") });
+
+		TestLink testlink = new TestLink(TestLinkConfig.NO_PERMISSIONS, api, "tester");
+		TLMetricsRegistry metrics = new TLMetricsRegistry();
+		testlink.setMetrics(metrics);
+		TLTestProject project = testlink.getTestProject("project").orElseThrow(EmptyOptionalError::new);
+		testlink.getTestProject("project");
+		testlink.getTestProject("no-exist");
+		project.getFirstLevelTestSuite("suite");
+		project.getFirstLevelTestSuite("suite");
+
+		assertThat(metrics.getCallCount("getTestProjectByName")).isEqualTo(2);
+		assertThat(metrics.getErrorCount("getTestProjectByName")).isEqualTo(1);
+		assertThat(metrics.getCallCount("getFirstLevelTestSuitesForTestProject")).isEqualTo(1);
+		assertThat(metrics.getLatencyPercentile("getTestProjectByName", 99)).isGreaterThan(Duration.ZERO);
+		assertThat(metrics.getHits("projects")).isEqualTo(1);
+		assertThat(metrics.getMisses("projects")).isEqualTo(2);
+		assertThat(metrics.getHitRatio("firstLevelTestSuites")).isEqualTo(0.5);
+		assertThat(metrics.getGauge("inFlight")).isZero();
+		assertThat(metrics.getGauge("queueDepth")).isZero();
+	}
+
 }
@@ -0,0 +1,1157 @@
+package eu.qedv.tools.ootl.test.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for a TestLink server, speaking the XML-RPC methods this
+ * library uses on top of an in-memory model of projects, test suites, test
+ * cases, test plans, builds and executions.
+ * <p>
+ * Projects, test suites and test plans are added directly, everything else is
+ * created through the API like on a real server. Every request can be delayed
+ * by a random latency and a share of requests can be failed with HTTP 503, to
+ * see how the client behaves on a slow or unreliable network. Requests and
+ * responses are gzip compressed if the client asks for it. Calls can be
+ * batched with {@code system.multicall} like on TestLink's own XML-RPC server,
+ * unless switched off to stand in for a server without it.
+ * <p>
+ * Responses mimic TestLink 1.9 closely enough for {@code testlink-java-api},
+ * but do not check permissions and only validate what the library relies on.
+ *
+ * @author dimasinger
+ *
+ */
+public class TLFakeServer implements Closeable {
+
+	private static final XMLInputFactory xml = XMLInputFactory.newInstance();
+
+	static {
+		// send headers and body of a response together instead of waiting for the
+		// client to acknowledge the headers, which adds 40ms to every call
+		if(System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final String devKey;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private volatile long minLatencyNanos = 0;
+	private volatile long maxLatencyNanos = 0;
+	private volatile double errorRate = 0;
+	private volatile boolean multicall = true;
+
+	private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+	private final Set<SocketAddress> connections = ConcurrentHashMap.newKeySet();
+	private final LongAdder compressedResponses = new LongAdder();
+
+	// the model, guarded by itself
+	private final Object model = new Object();
+	private final AtomicInteger ids = new AtomicInteger();
+	private final Map<String, Project> projects = new LinkedHashMap<>();
+	private final Map<Integer, Suite> suites = new HashMap<>();
+	private final Map<Integer, Testcase> testcases = new HashMap<>();
+	private final Map<Integer, Plan> plans = new HashMap<>();
+	private final Map<Integer, Build> builds = new HashMap<>();
+	private int executions = 0;
+
+	private static class Project {
+		final int id;
+		final String name;
+		final String prefix;
+		final List<Suite> suites = new ArrayList<>();
+		final List<Plan> plans = new ArrayList<>();
+		int externalIDs = 0;
+
+		Project(int id, String name, String prefix) {
+			this.id = id;
+			this.name = name;
+			this.prefix = prefix;
+		}
+	}
+
+	private static class Suite {
+		final int id;
+		final Project project;
+		final int parentID;
+		final String name;
+		final String details;
+		final List<Suite> suites = new ArrayList<>();
+		final List<Testcase> testcases = new ArrayList<>();
+
+		Suite(int id, Project project, int parentID, String name, String details) {
+			this.id = id;
+			this.project = project;
+			this.parentID = parentID;
+			this.name = name;
+			this.details = details;
+		}
+	}
+
+	private static class Testcase {
+		final int id;
+		final Suite suite;
+		final String name;
+		final int externalID;
+		final List<Version> versions = new ArrayList<>();
+
+		Testcase(int id, Suite suite, String name, int externalID) {
+			this.id = id;
+			this.suite = suite;
+			this.name = name;
+			this.externalID = externalID;
+		}
+
+		Version latest() {
+			return versions.get(versions.size() - 1);
+		}
+	}
+
+	private static class Version {
+		final int id;
+		final int number;
+		final String summary;
+		final Object[] steps;
+
+		Version(int id, int number, String summary, Object[] steps) {
+			this.id = id;
+			this.number = number;
+			this.summary = summary;
+			this.steps = steps;
+		}
+	}
+
+	private static class Plan {
+		final int id;
+		final Project project;
+		final String name;
+		final List<Build> builds = new ArrayList<>();
+		// test case ID to linked version and feature ID
+		final Map<Integer, Version> linked = new HashMap<>();
+		final Map<Integer, Integer> features = new HashMap<>();
+		final Map<Integer, Execution> lastExecutions = new HashMap<>();
+
+		Plan(int id, Project project, String name) {
+			this.id = id;
+			this.project = project;
+			this.name = name;
+		}
+	}
+
+	private static class Build {
+		final int id;
+		final Plan plan;
+		final String name;
+		final String notes;
+
+		Build(int id, Plan plan, String name, String notes) {
+			this.id = id;
+			this.plan = plan;
+			this.name = name;
+			this.notes = notes;
+		}
+	}
+
+	private static class Execution {
+		final int id;
+		final Build build;
+		final Version version;
+		final String status;
+		final String notes;
+		final Date timestamp = new Date();
+
+		Execution(int id, Build build, Version version, String status, String notes) {
+			this.id = id;
+			this.build = build;
+			this.version = version;
+			this.status = status;
+			this.notes = notes;
+		}
+	}
+
+	/**
+	 * An error TestLink reports in its response, as opposed to failing the
+	 * request
+	 */
+	private static class TestLinkError extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		final int code;
+
+		TestLinkError(int code, String message) {
+			super(message);
+			this.code = code;
+		}
+	}
+
+	/**
+	 * Starts a server on a free port of the loopback interface
+	 *
+	 * @param devKey
+	 *            the only developer key accepted
+	 */
+	public TLFakeServer(String devKey) throws IOException {
+		this.devKey = devKey;
+		AtomicInteger threads = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "testlink-fake-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 256);
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/*
+	 * Getters
+	 */
+
+	/**
+	 * @return the URL to pass to {@code TestLinkAPI}, with the path of a real
+	 *         installation
+	 */
+	public URL getURL() {
+		try {
+			return new URL("http", "localhost", server.getAddress().getPort(), "/lib/api/xmlrpc/v1/xmlrpc.php");
+		} catch(MalformedURLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the number of requests received for a method, like
+	 *         {@code tl.reportTCResult}, including failed ones and calls
+	 *         within a multicall
+	 */
+	public long getRequestCount(String method) {
+		LongAdder count = requests.get(method);
+		return count == null ? 0 : count.sum();
+	}
+
+	/**
+	 * @return the number of requests received for all methods
+	 */
+	public long getRequestCount() {
+		return requests.values().stream().mapToLong(LongAdder::sum).sum();
+	}
+
+	/**
+	 * @return the number of distinct connections requests were received on
+	 */
+	public int getConnectionCount() {
+		return connections.size();
+	}
+
+	/**
+	 * @return the number of responses sent gzip compressed
+	 */
+	public long getCompressedResponseCount() {
+		return compressedResponses.sum();
+	}
+
+	/**
+	 * @return the number of test case executions recorded
+	 */
+	public int getExecutionCount() {
+		synchronized(model) {
+			return executions;
+		}
+	}
+
+	/*
+	 * Configuration
+	 */
+
+	/**
+	 * Delays every request by a random duration between min and max, on top of
+	 * the time taken to process it
+	 */
+	public TLFakeServer setLatency(Duration min, Duration max) {
+		if(min.isNegative() || max.compareTo(min) < 0) {
+			throw new IllegalArgumentException("Invalid latency range " + min + " to " + max);
+		}
+		this.minLatencyNanos = min.toNanos();
+		this.maxLatencyNanos = max.toNanos();
+		return this;
+	}
+
+	/**
+	 * Fails a share of requests with HTTP 503 without processing them, which the
+	 * client sees as a transport error
+	 *
+	 * @param errorRate
+	 *            between 0 for no errors and 1 for failing every request
+	 */
+	public TLFakeServer setErrorRate(double errorRate) {
+		if(errorRate < 0 || errorRate > 1) {
+			throw new IllegalArgumentException("Error rate must be between 0 and 1, was " + errorRate);
+		}
+		this.errorRate = errorRate;
+		return this;
+	}
+
+	/**
+	 * Whether to answer {@code system.multicall}, otherwise it fails like any
+	 * unknown method
+	 */
+	public TLFakeServer setMulticall(boolean multicall) {
+		this.multicall = multicall;
+		return this;
+	}
+
+	/*
+	 * Model
+	 */
+
+	/**
+	 * Adds a test project
+	 *
+	 * @return the ID of the project
+	 */
+	public int addTestProject(String name, String prefix) {
+		synchronized(model) {
+			if(projects.containsKey(name)) {
+				throw new IllegalArgumentException("Test project '" + name + "' already exists");
+			}
+			Project project = new Project(ids.incrementAndGet(), name, prefix);
+			projects.put(name, project);
+			return project.id;
+		}
+	}
+
+	/**
+	 * Adds the test suites of a path missing in a project, like
+	 * {@code mkdir -p}
+	 *
+	 * @param path
+	 *            the names of the suites, starting with a first level suite
+	 * @return the ID of the last suite of the path
+	 */
+	public int addTestSuite(String projectName, String... path) {
+		synchronized(model) {
+			Project project = requireProject(projectName);
+			List<Suite> siblings = project.suites;
+			int parentID = project.id;
+			Suite suite = null;
+			for(String name : path) {
+				suite = find(siblings, s -> s.name, name);
+				if(suite == null) {
+					suite = newSuite(project, parentID, name, "");
+				}
+				siblings = suite.suites;
+				parentID = suite.id;
+			}
+			if(suite == null) throw new IllegalArgumentException("Empty test suite path");
+			return suite.id;
+		}
+	}
+
+	/**
+	 * Adds a test plan to a project
+	 *
+	 * @return the ID of the test plan
+	 */
+	public int addTestPlan(String projectName, String planName) {
+		synchronized(model) {
+			Project project = requireProject(projectName);
+			if(find(project.plans, p -> p.name, planName) != null) {
+				throw new IllegalArgumentException("Test plan '" + planName + "' already exists");
+			}
+			Plan plan = new Plan(ids.incrementAndGet(), project, planName);
+			project.plans.add(plan);
+			plans.put(plan.id, plan);
+			return plan.id;
+		}
+	}
+
+	private Project requireProject(String projectName) {
+		Project project = projects.get(projectName);
+		if(project == null) throw new IllegalArgumentException("No test project '" + projectName + "'");
+		return project;
+	}
+
+	private Suite newSuite(Project project, int parentID, String name, String details) {
+		Suite suite = new Suite(ids.incrementAndGet(), project, parentID, name, details);
+		Suite parent = suites.get(parentID);
+		(parent == null ? project.suites : parent.suites).add(suite);
+		suites.put(suite.id, suite);
+		return suite;
+	}
+
+	private static <T> T find(Collection<T> items, Function<T, String> name, String wanted) {
+		for(T item : items) {
+			if(name.apply(item).equals(wanted)) return item;
+		}
+		return null;
+	}
+
+	/*
+	 * HTTP
+	 */
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			connections.add(exchange.getRemoteAddress());
+			InputStream body = exchange.getRequestBody();
+			if("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+				body = new GZIPInputStream(body);
+			}
+			byte[] request = readAll(body);
+			sleep();
+			Object[] call = parseCall(request);
+			String method = (String) call[0];
+			requests.computeIfAbsent(method, m -> new LongAdder()).increment();
+			if(errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+				exchange.sendResponseHeaders(503, -1);
+				return;
+			}
+			byte[] response = respond(method, (Object[]) call[1]).getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+			String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if(accepted != null && accepted.contains("gzip")) {
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+				try(OutputStream out = new GZIPOutputStream(compressed)) {
+					out.write(response);
+				}
+				response = compressed.toByteArray();
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				compressedResponses.increment();
+			}
+			exchange.sendResponseHeaders(200, response.length);
+			try(OutputStream out = exchange.getResponseBody()) {
+				out.write(response);
+			}
+		} catch(XMLStreamException | RuntimeException e) {
+			exchange.sendResponseHeaders(400, -1);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void sleep() {
+		long min = minLatencyNanos;
+		long max = maxLatencyNanos;
+		if(max == 0) return;
+		long nanos = min == max ? min : ThreadLocalRandom.current().nextLong(min, max + 1);
+		try {
+			Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		for(int n; (n = in.read(buffer)) != -1;) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	/*
+	 * XML-RPC
+	 */
+
+	/**
+	 * @return the method name and the array of parameters
+	 */
+	private static Object[] parseCall(byte[] request) throws XMLStreamException {
+		XMLStreamReader in = xml.createXMLStreamReader(new StringReader(new String(request,
+				StandardCharsets.UTF_8)));
+		String method = null;
+		List<Object> params = new ArrayList<>();
+		while(in.hasNext()) {
+			if(in.next() != XMLStreamConstants.START_ELEMENT) continue;
+			if("methodName".equals(in.getLocalName())) {
+				method = in.getElementText().trim();
+			} else if("value".equals(in.getLocalName())) {
+				params.add(readValue(in));
+			}
+		}
+		if(method == null) throw new XMLStreamException("No method name");
+		return new Object[] { method, params.toArray() };
+	}
+
+	/**
+	 * Reads a value, positioned on its start tag and leaving it on its end tag
+	 */
+	private static Object readValue(XMLStreamReader in) throws XMLStreamException {
+		StringBuilder text = new StringBuilder();
+		Object value = null;
+		boolean typed = false;
+		while(true) {
+			switch(in.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				value = readTyped(in);
+				typed = true;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				// a value without type is a string
+				return typed ? value : text.toString();
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				text.append(in.getText());
+				break;
+			default:
+			}
+		}
+	}
+
+	private static Object readTyped(XMLStreamReader in) throws XMLStreamException {
+		String type = in.getLocalName();
+		switch(type) {
+		case "struct":
+			Map<String, Object> struct = new HashMap<>();
+			while(in.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				String name = null;
+				Object member = null;
+				while(in.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					if("name".equals(in.getLocalName())) {
+						name = in.getElementText();
+					} else {
+						member = readValue(in);
+					}
+				}
+				struct.put(name, member);
+			}
+			return struct;
+		case "array":
+			List<Object> array = new ArrayList<>();
+			in.nextTag();
+			while(in.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				array.add(readValue(in));
+			}
+			in.nextTag();
+			return array.toArray();
+		case "nil":
+			in.nextTag();
+			return null;
+		case "int":
+		case "i4":
+		case "i1":
+		case "i2":
+			return Integer.valueOf(in.getElementText().trim());
+		case "i8":
+			return Long.valueOf(in.getElementText().trim());
+		case "boolean":
+			return "1".equals(in.getElementText().trim());
+		case "double":
+			return Double.valueOf(in.getElementText().trim());
+		default:
+			// strings, dates and anything the fake does not interpret
+			return in.getElementText();
+		}
+	}
+
+	private static void writeValue(StringBuilder out, Object value) {
+		out.append("<value>");
+		if(value instanceof Map) {
+			out.append("<struct>");
+			for(Map.Entry<?, ?> member : ((Map<?, ?>) value).entrySet()) {
+				if(member.getValue() == null) continue;
+				out.append("<member><name>");
+				escape(out, member.getKey().toString());
+				out.append("</name>");
+				writeValue(out, member.getValue());
+				out.append("</member>");
+			}
+			out.append("</struct>");
+		} else if(value instanceof Object[] || value instanceof Collection) {
+			out.append("<array><data>");
+			for(Object element : value instanceof Object[] ? Arrays.asList((Object[]) value)
+					: (Collection<?>) value) {
+				writeValue(out, element);
+			}
+			out.append("</data></array>");
+		} else if(value instanceof Integer) {
+			out.append("<int>").append(value).append("</int>");
+		} else if(value instanceof Boolean) {
+			out.append("<boolean>").append((Boolean) value ? 1 : 0).append("</boolean>");
+		} else if(value instanceof Double) {
+			out.append("<double>").append(value).append("</double>");
+		} else {
+			out.append("<string>");
+			escape(out, String.valueOf(value));
+			out.append("</string>");
+		}
+		out.append("</value>");
+	}
+
+	private static void escape(StringBuilder out, String text) {
+		for(int i = 0; i < text.length(); ++i) {
+			char c = text.charAt(i);
+			switch(c) {
+			case '<':
+				out.append("&lt;");
+				break;
+			case '>':
+				out.append("&gt;");
+				break;
+			case '&':
+				out.append("&amp;");
+				break;
+			default:
+				out.append(c);
+			}
+		}
+	}
+
+	private String respond(String method, Object[] params) {
+		Object result = "system.multicall".equals(method) && multicall ? multicall(params) : call(method, params);
+		StringBuilder out = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		if(result instanceof Fault) {
+			out.append("<methodResponse><fault>");
+			writeValue(out, ((Fault) result).toStruct());
+			return out.append("</fault></methodResponse>").toString();
+		}
+		out.append("<methodResponse><params><param>");
+		writeValue(out, result);
+		return out.append("</param></params></methodResponse>").toString();
+	}
+
+	private Object call(String method, Object[] params) {
+		try {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> args = params.length > 0 && params[0] instanceof Map ? (Map<String, Object>) params[0]
+					: new HashMap<>();
+			return dispatch(method, args);
+		} catch(TestLinkError e) {
+			Map<String, Object> error = new LinkedHashMap<>();
+			error.put("code", e.code);
+			error.put("message", e.getMessage());
+			return new Object[] { error };
+		}
+	}
+
+	/**
+	 * Answers every call with an array of its result or with a fault struct,
+	 * like the IXR server of TestLink
+	 */
+	private Object multicall(Object[] params) {
+		if(params.length != 1 || !(params[0] instanceof Object[])) {
+			return new Fault(-32602, "server error. invalid method parameters");
+		}
+		Object[] calls = (Object[]) params[0];
+		Object[] results = new Object[calls.length];
+		for(int i = 0; i < calls.length; ++i) {
+			Map<?, ?> call = calls[i] instanceof Map ? (Map<?, ?>) calls[i] : new HashMap<>();
+			Object method = call.get("methodName");
+			Object callParams = call.get("params");
+			Object result;
+			if(!(method instanceof String) || !(callParams instanceof Object[])) {
+				result = new Fault(-32600, "server error. invalid xml-rpc. not conforming to spec.");
+			} else if("system.multicall".equals(method)) {
+				result = new Fault(-32600, "Recursive calls to system.multicall are forbidden");
+			} else {
+				requests.computeIfAbsent((String) method, m -> new LongAdder()).increment();
+				result = call((String) method, (Object[]) callParams);
+			}
+			results[i] = result instanceof Fault ? ((Fault) result).toStruct() : new Object[] { result };
+		}
+		return results;
+	}
+
+	/**
+	 * An XML-RPC fault, returned for methods the server does not know
+	 */
+	private static class Fault {
+		final int code;
+		final String message;
+
+		Fault(int code, String message) {
+			this.code = code;
+			this.message = message;
+		}
+
+		Map<String, Object> toStruct() {
+			Map<String, Object> fault = new LinkedHashMap<>();
+			fault.put("faultCode", code);
+			fault.put("faultString", message);
+			return fault;
+		}
+	}
+
+	/*
+	 * TestLink methods
+	 */
+
+	private Object dispatch(String method, Map<String, Object> args) {
+		if("tl.sayHello".equals(method) || "tl.ping".equals(method)) {
+			return "Hello!";
+		}
+		if(!devKey.equals(args.get("devKey"))) {
+			throw new TestLinkError(2000, "Can not authenticate client: invalid developer key");
+		}
+		synchronized(model) {
+			switch(method) {
+			case "tl.checkDevKey":
+				return Boolean.TRUE;
+			case "tl.getTestProjectByName":
+				return getTestProjectByName(args);
+			case "tl.getFirstLevelTestSuitesForTestProject":
+				return getFirstLevelTestSuitesForTestProject(args);
+			case "tl.getTestSuitesForTestSuite":
+				return getTestSuitesForTestSuite(args);
+			case "tl.createTestSuite":
+				return createTestSuite(args);
+			case "tl.getTestCasesForTestSuite":
+				return getTestCasesForTestSuite(args);
+			case "tl.getTestCase":
+				return getTestCase(args);
+			case "tl.createTestCase":
+				return createTestCase(args);
+			case "tl.getTestPlanByName":
+				return getTestPlanByName(args);
+			case "tl.getBuildsForTestPlan":
+				return getBuildsForTestPlan(args);
+			case "tl.createBuild":
+				return createBuild(args);
+			case "tl.addTestCaseToTestPlan":
+				return addTestCaseToTestPlan(args);
+			case "tl.reportTCResult":
+				return reportTCResult(args);
+			case "tl.getLastExecutionResult":
+				return getLastExecutionResult(args);
+			default:
+				return new Fault(-32601, "server error. requested method " + method + " does not exist.");
+			}
+		}
+	}
+
+	private Object getTestProjectByName(Map<String, Object> args) {
+		String name = string(args, "testprojectname");
+		Project project = projects.get(name);
+		if(project == null) {
+			throw new TestLinkError(7011, "The Test Project (name:" + name + ") does not exist.");
+		}
+		Map<String, Object> options = new HashMap<>();
+		options.put("requirementsEnabled", 1);
+		options.put("testPriorityEnabled", 1);
+		options.put("automationEnabled", 1);
+		options.put("inventoryEnabled", 1);
+		Map<String, Object> map = new HashMap<>();
+		map.put("id", project.id);
+		map.put("name", project.name);
+		map.put("prefix", project.prefix);
+		map.put("notes", "");
+		map.put("active", 1);
+		map.put("is_public", 1);
+		map.put("opt", options);
+		return map;
+	}
+
+	private Object getFirstLevelTestSuitesForTestProject(Map<String, Object> args) {
+		Project project = requireProject(integer(args, "testprojectid"));
+		List<Object> result = new ArrayList<>();
+		for(Suite suite : project.suites) {
+			result.add(toMap(suite));
+		}
+		return result;
+	}
+
+	private Object getTestSuitesForTestSuite(Map<String, Object> args) {
+		Suite parent = requireSuite(integer(args, "testsuiteid"));
+		if(parent.suites.isEmpty()) return "";
+		Map<String, Object> result = new LinkedHashMap<>();
+		for(Suite suite : parent.suites) {
+			result.put(String.valueOf(suite.id), toMap(suite));
+		}
+		return result;
+	}
+
+	private Object createTestSuite(Map<String, Object> args) {
+		Project project = requireProject(integer(args, "testprojectid"));
+		String name = string(args, "testsuitename");
+		Integer parentID = integer(args, "parentid");
+		List<Suite> siblings = parentID == null ? project.suites : requireSuite(parentID).suites;
+		if(find(siblings, s -> s.name, name) != null && !Boolean.FALSE.equals(args.get("checkduplicatedname"))) {
+			throw new TestLinkError(8001, "There's already a test suite named '" + name + "'");
+		}
+		Suite suite = newSuite(project, parentID == null ? project.id : parentID, name, string(args, "details"));
+		Map<String, Object> map = new HashMap<>();
+		map.put("id", suite.id);
+		map.put("name", suite.name);
+		map.put("status", true);
+		map.put("operation", "createTestSuite");
+		map.put("message", "ok");
+		return new Object[] { map };
+	}
+
+	private Object getTestCasesForTestSuite(Map<String, Object> args) {
+		Suite suite = requireSuite(integer(args, "testsuiteid"));
+		String details = args.containsKey("details") ? string(args, "details") : "simple";
+		List<Object> result = new ArrayList<>();
+		collectTestCases(suite, !Boolean.FALSE.equals(args.get("deep")), details, result);
+		return result;
+	}
+
+	private void collectTestCases(Suite suite, boolean deep, String details, List<Object> result) {
+		for(Testcase testcase : suite.testcases) {
+			Map<String, Object> map = new HashMap<>();
+			map.put("id", testcase.id);
+			map.put("name", testcase.name);
+			map.put("parent_id", suite.id);
+			map.put("node_order", 0);
+			map.put("external_id", externalID(testcase));
+			Version version = testcase.latest();
+			if("summary".equals(details) || "full".equals(details)) {
+				map.put("summary", version.summary);
+			}
+			if("full".equals(details)) {
+				putVersion(map, version);
+			}
+			result.add(map);
+		}
+		if(deep) {
+			for(Suite child : suite.suites) {
+				collectTestCases(child, true, details, result);
+			}
+		}
+	}
+
+	private Object getTestCase(Map<String, Object> args) {
+		Testcase testcase = requireTestcase(integer(args, "testcaseid"));
+		Integer number = integer(args, "version");
+		Version version = number == null ? testcase.latest() : null;
+		for(Version v : testcase.versions) {
+			if(number != null && v.number == number) version = v;
+		}
+		if(version == null) {
+			throw new TestLinkError(5003, "Test case " + testcase.name + " has no version " + number);
+		}
+		Map<String, Object> map = new HashMap<>();
+		map.put("testcase_id", testcase.id);
+		map.put("name", testcase.name);
+		map.put("testsuite_id", testcase.suite.id);
+		map.put("full_tc_external_id", externalID(testcase));
+		map.put("summary", version.summary);
+		putVersion(map, version);
+		return new Object[] { map };
+	}
+
+	private static void putVersion(Map<String, Object> map, Version version) {
+		map.put("tcversion_id", version.id);
+		map.put("version", version.number);
+		map.put("preconditions", "");
+		map.put("status", 7);
+		map.put("execution_type", 2);
+		map.put("steps", version.steps);
+	}
+
+	private Object createTestCase(Map<String, Object> args) {
+		Project project = requireProject(integer(args, "testprojectid"));
+		Suite suite = requireSuite(integer(args, "testsuiteid"));
+		String name = string(args, "testcasename");
+		String action = args.containsKey("actiononduplicatedname") ? string(args, "actiononduplicatedname")
+				: "block";
+		Testcase testcase = find(suite.testcases, t -> t.name, name);
+		Map<String, Object> info = new HashMap<>();
+		if(testcase != null && !Boolean.FALSE.equals(args.get("checkduplicatedname"))) {
+			switch(action) {
+			case "create_new_version":
+				break;
+			case "generate_new":
+				testcase = null;
+				name = name + " " + new SimpleDateFormat("yyyyMMdd HH:mm:ss").format(new Date());
+				break;
+			default:
+				info.put("status_ok", 0);
+				info.put("msg", "There's already a Test Case with this title (" + name + ")");
+				info.put("id", -1);
+				Map<String, Object> blocked = new HashMap<>();
+				blocked.put("operation", "createTestCase");
+				blocked.put("status", true);
+				blocked.put("id", -1);
+				blocked.put("additionalInfo", info);
+				blocked.put("message", "");
+				return new Object[] { blocked };
+			}
+		} else {
+			testcase = null;
+		}
+		if(testcase == null) {
+			testcase = new Testcase(ids.incrementAndGet(), suite, name, ++project.externalIDs);
+			suite.testcases.add(testcase);
+			testcases.put(testcase.id, testcase);
+		}
+		Version version = new Version(ids.incrementAndGet(), testcase.versions.size() + 1, string(args, "summary"),
+				steps(args.get("steps")));
+		testcase.versions.add(version);
+		info.put("status_ok", 1);
+		info.put("msg", "ok");
+		info.put("id", testcase.id);
+		info.put("external_id", testcase.externalID);
+		info.put("version_number", version.number);
+		info.put("has_duplicate", testcase.versions.size() > 1);
+		Map<String, Object> map = new HashMap<>();
+		map.put("operation", "createTestCase");
+		map.put("status", true);
+		map.put("id", testcase.id);
+		map.put("additionalInfo", info);
+		map.put("message", "Success!");
+		return new Object[] { map };
+	}
+
+	private Object[] steps(Object steps) {
+		if(!(steps instanceof Object[])) return new Object[0];
+		Object[] result = new Object[((Object[]) steps).length];
+		for(int i = 0; i < result.length; ++i) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> step = (Map<String, Object>) ((Object[]) steps)[i];
+			Map<String, Object> map = new HashMap<>();
+			map.put("id", ids.incrementAndGet());
+			map.put("step_number", step.get("step_number"));
+			map.put("actions", step.get("actions"));
+			map.put("expected_results", step.get("expected_results"));
+			map.put("execution_type", step.get("execution_type"));
+			map.put("active", 1);
+			result[i] = map;
+		}
+		return result;
+	}
+
+	private Object getTestPlanByName(Map<String, Object> args) {
+		String projectName = string(args, "testprojectname");
+		String planName = string(args, "testplanname");
+		Project project = projects.get(projectName);
+		if(project == null) {
+			throw new TestLinkError(7011, "The Test Project (name:" + projectName + ") does not exist.");
+		}
+		Plan plan = find(project.plans, p -> p.name, planName);
+		if(plan == null) {
+			throw new TestLinkError(3033, "The Test Plan (name:" + planName + ") does not exist on Test Project (name:"
+					+ projectName + ").");
+		}
+		Map<String, Object> map = new HashMap<>();
+		map.put("id", plan.id);
+		map.put("name", plan.name);
+		map.put("notes", "");
+		map.put("active", 1);
+		map.put("is_public", 1);
+		map.put("testproject_id", project.id);
+		return new Object[] { map };
+	}
+
+	private Object getBuildsForTestPlan(Map<String, Object> args) {
+		Plan plan = requirePlan(integer(args, "testplanid"));
+		List<Object> result = new ArrayList<>();
+		for(Build build : plan.builds) {
+			result.add(toMap(build));
+		}
+		return result;
+	}
+
+	private Object createBuild(Map<String, Object> args) {
+		Plan plan = requirePlan(integer(args, "testplanid"));
+		String name = string(args, "buildname");
+		Build build = find(plan.builds, b -> b.name, name);
+		Map<String, Object> map = new HashMap<>();
+		map.put("status", true);
+		if(build == null) {
+			build = new Build(ids.incrementAndGet(), plan, name, string(args, "buildnotes"));
+			plan.builds.add(build);
+			builds.put(build.id, build);
+			map.put("message", "Success!");
+		} else {
+			map.put("message", "Build name (" + name + ") already exists (id:" + build.id + ")");
+		}
+		map.put("id", build.id);
+		return new Object[] { map };
+	}
+
+	private Object addTestCaseToTestPlan(Map<String, Object> args) {
+		Plan plan = requirePlan(integer(args, "testplanid"));
+		Testcase testcase = requireTestcase(integer(args, "testcaseid"));
+		Integer number = integer(args, "version");
+		Version version = null;
+		for(Version v : testcase.versions) {
+			if(number != null && v.number == number) version = v;
+		}
+		if(version == null) {
+			throw new TestLinkError(3046, "Test case " + testcase.name + " has no version " + number);
+		}
+		Version linked = plan.linked.get(testcase.id);
+		if(linked != null && linked != version) {
+			throw new TestLinkError(3045, "Test Case version number " + linked.number + " <> " + version.number
+					+ " (requested version) , is already linked to Test Plan " + plan.name);
+		}
+		if(linked == null) {
+			plan.linked.put(testcase.id, version);
+			plan.features.put(testcase.id, ids.incrementAndGet());
+		}
+		Map<String, Object> map = new HashMap<>();
+		map.put("operation", "link");
+		map.put("feature_id", plan.features.get(testcase.id));
+		return map;
+	}
+
+	private Object reportTCResult(Map<String, Object> args) {
+		Plan plan = requirePlan(integer(args, "testplanid"));
+		Testcase testcase = requireTestcase(integer(args, "testcaseid"));
+		Version version = plan.linked.get(testcase.id);
+		if(version == null) {
+			throw new TestLinkError(3030, "Test Case (name:" + testcase.name + ") has not been assigned to Test Plan "
+					+ plan.name);
+		}
+		Build build = builds.get(integer(args, "buildid"));
+		if(build == null || build.plan != plan) {
+			throw new TestLinkError(4000, "Build id " + args.get("buildid") + " does not belong to Test Plan "
+					+ plan.name);
+		}
+		String status = string(args, "status");
+		if(!"p".equals(status) && !"f".equals(status) && !"b".equals(status)) {
+			throw new TestLinkError(6000, "Invalid status code (" + status + ")");
+		}
+		Execution last = plan.lastExecutions.get(testcase.id);
+		boolean overwrite = Boolean.TRUE.equals(args.get("overwrite")) && last != null && last.build == build;
+		Execution execution = new Execution(overwrite ? last.id : ids.incrementAndGet(), build, version, status,
+				string(args, "notes"));
+		plan.lastExecutions.put(testcase.id, execution);
+		if(!overwrite) ++executions;
+		Map<String, Object> map = new HashMap<>();
+		map.put("status", true);
+		map.put("operation", "reportTCResult");
+		map.put("overwrite", overwrite);
+		map.put("message", "Success!");
+		map.put("id", execution.id);
+		return new Object[] { map };
+	}
+
+	private Object getLastExecutionResult(Map<String, Object> args) {
+		Plan plan = requirePlan(integer(args, "testplanid"));
+		Testcase testcase = requireTestcase(integer(args, "testcaseid"));
+		Execution execution = plan.lastExecutions.get(testcase.id);
+		Map<String, Object> map = new HashMap<>();
+		if(execution == null) {
+			map.put("id", -1);
+			return new Object[] { map };
+		}
+		map.put("id", execution.id);
+		map.put("build_id", execution.build.id);
+		map.put("tester_id", 1);
+		map.put("status", execution.status);
+		map.put("testplan_id", plan.id);
+		map.put("tcversion_id", execution.version.id);
+		map.put("tcversion_number", execution.version.number);
+		map.put("execution_type", 2);
+		map.put("notes", execution.notes);
+		map.put("execution_ts", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(execution.timestamp));
+		return new Object[] { map };
+	}
+
+	private static Map<String, Object> toMap(Suite suite) {
+		Map<String, Object> map = new HashMap<>();
+		map.put("id", suite.id);
+		map.put("name", suite.name);
+		map.put("parent_id", suite.parentID);
+		map.put("node_order", 0);
+		map.put("details", suite.details);
+		return map;
+	}
+
+	private static Map<String, Object> toMap(Build build) {
+		Map<String, Object> map = new HashMap<>();
+		map.put("id", build.id);
+		map.put("testplan_id", build.plan.id);
+		map.put("name", build.name);
+		map.put("notes", build.notes);
+		map.put("active", 1);
+		map.put("is_open", 1);
+		return map;
+	}
+
+	private static String externalID(Testcase testcase) {
+		return testcase.suite.project.prefix + "-" + testcase.externalID;
+	}
+
+	private Project requireProject(Integer id) {
+		for(Project project : projects.values()) {
+			if(id != null && project.id == id) return project;
+		}
+		throw new TestLinkError(7000, "The Test Project ID (" + id + ") does not exist.");
+	}
+
+	private Suite requireSuite(Integer id) {
+		Suite suite = suites.get(id);
+		if(suite == null) throw new TestLinkError(8000, "The Test Suite ID (" + id + ") does not exist.");
+		return suite;
+	}
+
+	private Testcase requireTestcase(Integer id) {
+		Testcase testcase = testcases.get(id);
+		if(testcase == null) throw new TestLinkError(5000, "The Test Case ID (" + id + ") does not exist.");
+		return testcase;
+	}
+
+	private Plan requirePlan(Integer id) {
+		Plan plan = plans.get(id);
+		if(plan == null) throw new TestLinkError(3000, "The Test Plan ID (" + id + ") does not exist.");
+		return plan;
+	}
+
+	private static String string(Map<String, Object> args, String name) {
+		Object value = args.get(name);
+		return value == null ? null : value.toString();
+	}
+
+	private static Integer integer(Map<String, Object> args, String name) {
+		Object value = args.get(name);
+		if(value == null) return null;
+		if(value instanceof Number) return ((Number) value).intValue();
+		try {
+			return Integer.valueOf(value.toString().trim());
+		} catch(NumberFormatException e) {
+			throw new TestLinkError(1000, "Parameter " + name + " is not an integer: " + value);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package eu.qedv.tools.ootl.test.server;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import eu.qedv.tools.ootl.TLBuild;
+import eu.qedv.tools.ootl.TLTestCase;
+import eu.qedv.tools.ootl.TLTestProject;
+import eu.qedv.tools.ootl.TLTestSuite;
+import eu.qedv.tools.ootl.TLTransport;
+import eu.qedv.tools.ootl.TestLink;
+import eu.qedv.tools.ootl.TestLinkConfig;
+import eu.qedv.tools.ootl.metrics.TLMetricsRegistry;
+import eu.qedv.tools.ootl.structure.ResultCode;
+import eu.qedv.tools.ootl.structure.TLTestStep;
+
+/**
+ * Measures the end-to-end throughput of reporting test results against a
+ * {@link TLFakeServer}, over real HTTP and XML-RPC, at increasing numbers of
+ * concurrent callers.
+ * <p>
+ * Every operation resolves a test suite by path, looks up a test case in it
+ * and executes the test case in a build, like a test runner reporting its
+ * results. Each concurrency level starts with a new connection, so it includes
+ * filling the caches. With a batch window, calls are coalesced into multicalls
+ * by a {@link TLTransport} with batches of up to 16 calls. Run it with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=eu.qedv.tools.ootl.test.server.TLLoadDriver \
+ *     -Dexec.args="[latency ms] [error rate] [operations per level] [batch window ms]"
+ * </pre>
+ *
+ * @author dimasinger
+ *
+ */
+public class TLLoadDriver {
+
+	private static final String DEV_KEY = "load";
+	private static final String PROJECT = "load";
+	private static final String PLAN = "plan";
+	private static final int[] CONCURRENCY = { 1, 4, 16, 64 };
+
+	// 8 x 8 suites with 4 test cases each
+	private static final int AREAS = 8;
+	private static final int COMPONENTS = 8;
+	private static final int TESTCASES = 4;
+
+	// injected errors are counted, not logged
+	private static final Logger log = Logger.getLogger("eu.qedv.tools.ootl");
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		int latency = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+		double errorRate = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+		int operations = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		int batchWindow = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+		log.setLevel(Level.OFF);
+
+		try(TLFakeServer server = new TLFakeServer(DEV_KEY);
+				TLTransport transport = batchWindow > 0 ? new TLTransport(64, Duration.ofSeconds(10), Duration
+						.ofSeconds(60), false, Duration.ofMillis(batchWindow), 16) : new TLTransport()) {
+			server.addTestProject(PROJECT, "LD");
+			server.addTestPlan(PROJECT, PLAN);
+			for(int area = 0; area < AREAS; ++area) {
+				for(int component = 0; component < COMPONENTS; ++component) {
+					server.addTestSuite(PROJECT, "area" + area, "component" + component);
+				}
+			}
+			createTestCases(server, transport);
+			server.setLatency(Duration.ofMillis(latency), Duration.ofMillis(latency * 2));
+
+			System.out.println("Latency " + latency + "-" + latency * 2 + "ms, error rate " + errorRate + ", "
+					+ operations + " operations per level, batch window " + batchWindow + "ms");
+			System.out.println(String.format("%11s %10s %10s %10s %8s %8s", "concurrency", "ops/s", "p50 ms",
+					"p99 ms", "failed", "limit"));
+			for(int concurrency : CONCURRENCY) {
+				run(server, transport, concurrency, operations, errorRate);
+			}
+		}
+	}
+
+	private static TestLink connect(TLFakeServer server, TLTransport transport) {
+		return new TestLink(TestLinkConfig.ALL_PERMISSIONS, server.getURL(), DEV_KEY, "load", transport);
+	}
+
+	private static void createTestCases(TLFakeServer server, TLTransport transport) {
+		TLTestProject project = connect(server, transport).getTestProject(PROJECT).orElseThrow(IllegalStateException::new);
+		TLTestStep result = new TLTestStep(null).setResult(ResultCode.SUCCESS);
+		new TLTestStep(result).setName("step").setResult(ResultCode.SUCCESS);
+		for(int area = 0; area < AREAS; ++area) {
+			for(int component = 0; component < COMPONENTS; ++component) {
+				TLTestSuite suite = project.getTestSuiteByPath(path(area, component)).orElseThrow(
+						IllegalStateException::new);
+				for(int i = 0; i < TESTCASES; ++i) {
+					suite.createTestCase("testcase" + i, "Load test case", result);
+				}
+			}
+		}
+	}
+
+	private static String path(int area, int component) {
+		return "area" + area + "/component" + component;
+	}
+
+	private static void run(TLFakeServer server, TLTransport transport, int concurrency, int operations,
+			double errorRate) throws InterruptedException, ExecutionException {
+		// errors are only injected while measuring, connecting must succeed
+		server.setErrorRate(0);
+		TestLink tl = connect(server, transport);
+		TLMetricsRegistry metrics = new TLMetricsRegistry();
+		tl.setMetrics(metrics);
+		TLTestProject project = tl.getTestProject(PROJECT).orElseThrow(IllegalStateException::new);
+		TLBuild build = project.getOrCreateBuild(PLAN, "build" + concurrency);
+
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		server.setErrorRate(errorRate);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>(operations);
+			long start = System.nanoTime();
+			for(int i = 0; i < operations; ++i) {
+				int op = i;
+				futures.add(executor.submit(() -> execute(project, build, op)));
+			}
+			int failed = 0;
+			for(Future<Boolean> future : futures) {
+				if(!future.get()) ++failed;
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			String method = "setTestCaseExecutionResult";
+			System.out.println(String.format("%11d %10.1f %10d %10d %8d %8d", concurrency, operations / seconds,
+					metrics.getLatencyPercentile(method, 50).toMillis(), metrics.getLatencyPercentile(method, 99)
+							.toMillis(), failed, tl.getLimiter().getLimit()));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static boolean execute(TLTestProject project, TLBuild build, int op) {
+		int suite = op % (AREAS * COMPONENTS);
+		try {
+			Optional<TLTestCase> testcase = project.getTestSuiteByPath(path(suite / COMPONENTS, suite % COMPONENTS))
+					.flatMap(s -> s.getTestCase("testcase" + op / (AREAS * COMPONENTS) % TESTCASES));
+			return testcase.isPresent() && testcase.get().execute(build, ResultCode.SUCCESS, "Operation " + op);
+		} catch(RuntimeException e) {
+			return false;
+		}
+	}
+}
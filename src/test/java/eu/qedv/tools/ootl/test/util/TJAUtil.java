@@ -134,7 +134,7 @@ public class TJAUtil {
 			Scanner scanner = new Scanner(is);
 			while(scanner.hasNext()) {
 				String[] s = scanner.nextLine().split(":", 2);
-				testcases.add(getTestCase(projectID, suiteID, Integer.parseInt(s[0]), s[1]));
+				testcases.add(getTestCase(Integer.parseInt(s[0]), suiteID, projectID, s[1]));
 			}
 			scanner.close();
 		} catch(IOException e) {